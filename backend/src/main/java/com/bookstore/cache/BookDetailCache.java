@@ -0,0 +1,259 @@
+package com.bookstore.cache;
+
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.event.AuthorChangedEvent;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.CategoryChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Cache read-through BookSummaryDTO theo id: giới hạn theo dung lượng ước tính, TTL và loại bỏ LRU
+@Component
+public class BookDetailCache {
+
+    @Value("${app.cache.book.max-weight-bytes:16777216}")
+    private long maxWeightBytes;
+
+    @Value("${app.cache.book.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    // accessOrder = true: phần tử đầu là phần tử ít được truy cập gần đây nhất
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalWeight;
+
+    // Đồng hồ logic tăng mỗi lần invalidate. Load ghi lại giá trị lúc bắt đầu; nếu chính sách đó (hoặc toàn bộ cache)
+    // bị invalidate sau thời điểm ấy thì kết quả không được ghi vào cache (tránh ghi đè dữ liệu cũ), load của sách
+    // khác vẫn được ghi bình thường
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<Long, Long> invalidatedAt = new HashMap<>();
+    private long clearedAt;
+
+    // Quá số mốc này thì gộp thành một mốc clearedAt chung (chỉ làm hỏng các load đang chạy) để map không phình mãi
+    private static final int MAX_INVALIDATION_STAMPS = 4096;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Lấy từ cache, nếu không có thì gọi loader (ngoài lock) và lưu lại kết quả
+    public BookSummaryDTO get(Long bookId, Function<Long, BookSummaryDTO> loader) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(bookId);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                removeEntry(bookId);
+                expirations.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        long loadStamp = clock.get();
+        BookSummaryDTO value = loader.apply(bookId);
+        if (value != null) {
+            put(bookId, value, loadStamp);
+        }
+        return value;
+    }
+
+    // Lấy nhiều sách theo thứ tự bookIds: phần có trong cache lấy trực tiếp, phần còn thiếu nạp một lần qua loader
+    // (loader có thể bỏ qua id không tồn tại)
+    public List<BookSummaryDTO> getAll(List<Long> bookIds, Function<List<Long>, List<BookSummaryDTO>> loader) {
+        long now = System.currentTimeMillis();
+        Map<Long, BookSummaryDTO> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        synchronized (this) {
+            for (Long bookId : bookIds) {
+                Entry entry = entries.get(bookId);
+                if (entry != null && entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    found.put(bookId, entry.value);
+                } else {
+                    if (entry != null) {
+                        removeEntry(bookId);
+                        expirations.incrementAndGet();
+                    }
+                    missing.add(bookId);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            misses.addAndGet(missing.size());
+            long loadStamp = clock.get();
+            for (BookSummaryDTO value : loader.apply(missing)) {
+                found.put(value.getId(), value);
+                put(value.getId(), value, loadStamp);
+            }
+        }
+
+        List<BookSummaryDTO> result = new ArrayList<>(bookIds.size());
+        for (Long bookId : bookIds) {
+            BookSummaryDTO value = found.get(bookId);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    public synchronized void invalidate(Long bookId) {
+        long stamp = clock.incrementAndGet();
+        if (invalidatedAt.size() >= MAX_INVALIDATION_STAMPS) {
+            clearedAt = stamp;
+            invalidatedAt.clear();
+        } else {
+            invalidatedAt.put(bookId, stamp);
+        }
+        if (removeEntry(bookId) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public synchronized void clear() {
+        clearedAt = clock.incrementAndGet();
+        invalidatedAt.clear();
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    // Sách thay đổi (BookService, AdminBookController đều đi qua BookService) -> xóa entry sau khi commit
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onBookChanged(BookChangedEvent event) {
+        invalidate(event.getBookId());
+    }
+
+    // Tên tác giả/thể loại nằm trong DTO của mọi sách liên quan -> xóa toàn bộ (hiếm khi xảy ra)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onAuthorChanged(AuthorChangedEvent event) {
+        clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        clear();
+    }
+
+    public synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(hits.get(), misses.get(), evictions.get(), expirations.get(),
+            invalidations.get(), entries.size(), totalWeight, maxWeightBytes);
+    }
+
+    private synchronized void put(Long bookId, BookSummaryDTO value, long loadStamp) {
+        if (clearedAt > loadStamp || invalidatedAt.getOrDefault(bookId, 0L) > loadStamp) {
+            return;
+        }
+        int weight = estimateWeight(value);
+        if (weight > maxWeightBytes) {
+            return;
+        }
+        removeEntry(bookId);
+        entries.put(bookId, new Entry(value, System.currentTimeMillis() + ttlSeconds * 1000, weight));
+        totalWeight += weight;
+
+        Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+        while (totalWeight > maxWeightBytes && it.hasNext()) {
+            totalWeight -= it.next().getValue().weight;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    // Gọi trong lock
+    private Entry removeEntry(Long bookId) {
+        Entry removed = entries.remove(bookId);
+        if (removed != null) {
+            totalWeight -= removed.weight;
+        }
+        return removed;
+    }
+
+    // Ước lượng số byte của DTO: overhead object + 2 byte mỗi ký tự chuỗi
+    private static int estimateWeight(BookSummaryDTO book) {
+        int weight = 160;
+        weight += chars(book.getTitle()) + chars(book.getDescription()) + chars(book.getIsbn())
+            + chars(book.getImageUrl()) + chars(book.getLanguage())
+            + chars(book.getAuthorName()) + chars(book.getCategoryName());
+        if (book.getImages() != null) {
+            for (String image : book.getImages()) {
+                weight += 40 + chars(image);
+            }
+        }
+        return weight;
+    }
+
+    private static int chars(String value) {
+        return value == null ? 0 : 40 + value.length() * 2;
+    }
+
+    private static class Entry {
+        private final BookSummaryDTO value;
+        private final long expiresAt;
+        private final int weight;
+
+        Entry(BookSummaryDTO value, long expiresAt, int weight) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+    }
+
+    // Thống kê cache cho trang admin
+    public static class CacheStatistics {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+        private final int entries;
+        private final long weightBytes;
+        private final long maxWeightBytes;
+
+        public CacheStatistics(long hits, long misses, long evictions, long expirations, long invalidations,
+                               int entries, long weightBytes, long maxWeightBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+            this.entries = entries;
+            this.weightBytes = weightBytes;
+            this.maxWeightBytes = maxWeightBytes;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+        public long getInvalidations() { return invalidations; }
+        public int getEntries() { return entries; }
+        public long getWeightBytes() { return weightBytes; }
+        public long getMaxWeightBytes() { return maxWeightBytes; }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.bookstore.cache;
+
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.event.AuthorChangedEvent;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.CatalogRebuiltEvent;
+import com.bookstore.event.CategoryChangedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Phiên bản của catalog cho conditional GET (ETag): kiểm tra bằng bộ nhớ, không query DB.
+// Version là mốc thời gian (ms) chỉ tăng: max(version cũ + 1, thời điểm thay đổi), khởi tạo bằng thời điểm khởi động
+// nên không trùng với ETag đã phát ra trước khi restart. Không dùng làm Last-Modified: HTTP date chỉ chính xác
+// tới giây nên hai lần ghi trong cùng một giây sẽ cho 304 với nội dung cũ.
+// Listener chạy sau cùng (LOWEST_PRECEDENCE, các cache/index dùng LOWEST_PRECEDENCE - 1): version chỉ tăng khi
+// dữ liệu mới đã đọc được, nên không bao giờ có ETag mới đi kèm nội dung cũ.
+// Version chỉ tăng theo sự kiện sau commit của chính node này, nên chỉ đúng khi ứng dụng chạy một instance
+// (nội dung các index/cache cũng vậy): NodeLease từ chối khởi động node thứ hai.
+@Component
+public class CatalogVersions {
+
+    // Danh sách sách (gồm cả tên tác giả/thể loại nhúng trong từng sách)
+    private final AtomicLong books = new AtomicLong(System.currentTimeMillis());
+    // Danh sách thể loại (gồm số sách)
+    private final AtomicLong categories = new AtomicLong(System.currentTimeMillis());
+    // Danh sách tác giả
+    private final AtomicLong authors = new AtomicLong(System.currentTimeMillis());
+    // Tên tác giả/thể loại - là một phần nội dung chi tiết sách
+    private final AtomicLong names = new AtomicLong(System.currentTimeMillis());
+
+    // Version từng sách, lấy từ updatedAt
+    private final Map<Long, Long> bookVersions = new ConcurrentHashMap<>();
+
+    // Nạp version từng sách mỗi lần CatalogIndexer build lại catalog (lúc khởi động)
+    @EventListener
+    public void onCatalogRebuilt(CatalogRebuiltEvent event) {
+        for (BookSummaryDTO book : event.getBooks()) {
+            long version = toMillis(book.getUpdatedAt() != null ? book.getUpdatedAt() : book.getCreatedAt());
+            bookVersions.merge(book.getId(), version, Math::max);
+        }
+    }
+
+    // Cập nhật từng sách chạy sau các cache/index khác
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.isDeleted()) {
+            bookVersions.remove(event.getBookId());
+        } else {
+            // updatedAt trong snapshot có thể chưa được flush, version vẫn phải tăng
+            long floor = event.getBook() != null && event.getBook().getUpdatedAt() != null
+                ? toMillis(event.getBook().getUpdatedAt()) : System.currentTimeMillis();
+            bookVersions.merge(event.getBookId(), floor, (previous, value) -> Math.max(previous + 1, value));
+        }
+        bump(books);
+        bump(categories);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onAuthorChanged(AuthorChangedEvent event) {
+        bump(authors);
+        bump(names);
+        bump(books);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        bump(categories);
+        bump(names);
+        bump(books);
+    }
+
+    public Version books() {
+        long version = books.get();
+        return new Version("books-" + version);
+    }
+
+    public Version categories() {
+        long version = categories.get();
+        return new Version("categories-" + version);
+    }
+
+    public Version authors() {
+        long version = authors.get();
+        return new Version("authors-" + version);
+    }
+
+    // null nếu sách chưa được nạp (chưa index xong hoặc không tồn tại) -> xử lý như request thường
+    public Version book(Long bookId) {
+        Long version = bookVersions.get(bookId);
+        if (version == null) {
+            return null;
+        }
+        long namesVersion = names.get();
+        return new Version("book-" + bookId + "-" + version + "-" + namesVersion);
+    }
+
+    private static void bump(AtomicLong version) {
+        version.accumulateAndGet(System.currentTimeMillis(), (previous, now) -> Math.max(previous + 1, now));
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : System.currentTimeMillis();
+    }
+
+    // ETag (strong) của một tài nguyên
+    public static class Version {
+        private final String eTag;
+
+        public Version(String eTag) {
+            this.eTag = eTag;
+        }
+
+        public String getETag() { return "\"" + eTag + "\""; }
+    }
+}
@@ -0,0 +1,81 @@
+package com.bookstore.cache;
+
+import com.bookstore.dto.CategoryDTO;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.CategoryChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Cache danh sách thể loại kèm số sách: cả danh sách là một snapshot, bị bỏ khi thể loại hoặc sách thay đổi
+@Component
+public class CategorySummaryCache {
+
+    // TTL chỉ là lưới an toàn, dữ liệu được làm mới chủ yếu qua invalidate
+    @Value("${app.cache.category.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private volatile Snapshot snapshot;
+
+    // Tăng mỗi lần invalidate, load nào bắt đầu trước đó sẽ không được ghi vào cache
+    private final AtomicLong generation = new AtomicLong();
+
+    // Lấy snapshot hiện tại, nếu chưa có hoặc đã hết hạn thì gọi loader và lưu lại
+    public List<CategoryDTO> get(Supplier<List<CategoryDTO>> loader) {
+        Snapshot current = snapshot;
+        if (current != null && current.expiresAt > System.currentTimeMillis()) {
+            return current.categories;
+        }
+
+        long loadGeneration = generation.get();
+        List<CategoryDTO> categories = Collections.unmodifiableList(loader.get());
+        synchronized (this) {
+            if (generation.get() == loadGeneration) {
+                snapshot = new Snapshot(categories, System.currentTimeMillis() + ttlSeconds * 1000);
+            }
+        }
+        return categories;
+    }
+
+    public void invalidate() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            snapshot = null;
+        }
+    }
+
+    // Tên/mô tả thể loại thay đổi hoặc thể loại bị xóa
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        invalidate();
+    }
+
+    // Sách được thêm/xóa/đổi thể loại làm thay đổi số đếm. Giữ/hoàn kho theo đơn hàng chỉ đổi số sách còn hàng
+    // khi sách chuyển còn hàng <-> hết hàng, các lần khác bỏ qua để cache không bị xóa sau mỗi đơn
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.isStockOnly() && !event.isAvailabilityChanged()) {
+            return;
+        }
+        invalidate();
+    }
+
+    private static class Snapshot {
+        private final List<CategoryDTO> categories;
+        private final long expiresAt;
+
+        Snapshot(List<CategoryDTO> categories, long expiresAt) {
+            this.categories = categories;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.bookstore.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
@@ -29,7 +31,9 @@ public class DataSeeder {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    // Chạy trước CatalogIndexer để index được build từ dữ liệu đã seed
     @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
     public void seed(ApplicationReadyEvent event) {
         if (shouldSeedData()) {
             seedUsers();
@@ -0,0 +1,120 @@
+package com.bookstore.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Ứng dụng chỉ chạy MỘT instance: index/cache catalog, version ETag (CatalogVersions), ranking và tồn kho in-memory
+// đều nằm trong bộ nhớ và chỉ được cập nhật bởi sự kiện của chính node đó. Node đang chạy giữ lease trong bảng
+// node_lease (tạo ngoài ddl-auto để không bị xóa khi khởi động), node khác khởi động khi lease còn sống sẽ dừng ngay.
+// Lease được lấy trước khi Hibernate khởi tạo schema, nên node thứ hai dừng trước khi ddl-auto=create kịp xóa dữ liệu
+@Component
+public class NodeLease {
+
+    private static final Logger logger = LoggerFactory.getLogger(NodeLease.class);
+
+    private static final String CREATE_TABLE_SQL =
+        "CREATE TABLE IF NOT EXISTS node_lease (id INT NOT NULL PRIMARY KEY, owner VARCHAR(64) NOT NULL, " +
+        "heartbeat_ms BIGINT NOT NULL)";
+
+    @Autowired
+    private DataSource dataSource;
+
+    // Tắt được khi nhiều context dùng chung một DB trong cùng JVM (test)
+    @Value("${app.node.lease-enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.node.lease-timeout-ms:30000}")
+    private long leaseTimeoutMs;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private JdbcTemplate jdbcTemplate;
+
+    // Lease bị node khác lấy mất (node này treo quá lease-timeout) -> dữ liệu in-memory không còn đáng tin
+    private volatile boolean lost;
+
+    // Ném IllegalStateException (ứng dụng dừng khởi động) nếu một node khác đang giữ lease
+    @PostConstruct
+    public void acquire() {
+        if (!enabled) {
+            return;
+        }
+        // Chạy trước EntityManagerFactory nên dùng transaction JDBC riêng, không qua JpaTransactionManager
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource)).executeWithoutResult(status -> {
+            long now = System.currentTimeMillis();
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT owner, heartbeat_ms FROM node_lease WHERE id = 1 FOR UPDATE");
+            if (rows.isEmpty()) {
+                jdbcTemplate.update("INSERT INTO node_lease (id, owner, heartbeat_ms) VALUES (1, ?, ?)", nodeId, now);
+                return;
+            }
+            long heartbeat = ((Number) rows.get(0).get("heartbeat_ms")).longValue();
+            if (now - heartbeat < leaseTimeoutMs) {
+                throw new IllegalStateException("Một node khác (" + rows.get(0).get("owner") + ") đang chạy, " +
+                    "ứng dụng chỉ hỗ trợ một instance");
+            }
+            jdbcTemplate.update("UPDATE node_lease SET owner = ?, heartbeat_ms = ? WHERE id = 1", nodeId, now);
+        });
+        logger.info("Acquired node lease as {}", nodeId);
+    }
+
+    // Gia hạn lease; mất lease thì đánh dấu để các thành phần in-memory ngừng ghi tới khi khởi động lại
+    @Scheduled(fixedDelayString = "${app.node.lease-renew-interval-ms:5000}")
+    public void renew() {
+        if (!enabled || lost) {
+            return;
+        }
+        try {
+            int updated = jdbcTemplate.update("UPDATE node_lease SET heartbeat_ms = ? WHERE id = 1 AND owner = ?",
+                System.currentTimeMillis(), nodeId);
+            if (updated == 0) {
+                lost = true;
+                logger.error("Node lease was taken over by another node, in-memory state is no longer authoritative");
+            }
+        } catch (Exception e) {
+            // Lần sau thử lại; quá lease-timeout thì node khác mới được nhận lease
+            logger.warn("Failed to renew node lease: {}", e.getMessage());
+        }
+    }
+
+    // Trả lease khi dừng để node khác khởi động được ngay, không phải chờ hết hạn
+    @PreDestroy
+    public void release() {
+        if (!enabled || lost) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM node_lease WHERE id = 1 AND owner = ?", nodeId);
+        } catch (Exception e) {
+            logger.warn("Failed to release node lease: {}", e.getMessage());
+        }
+    }
+
+    public boolean isLost() {
+        return lost;
+    }
+
+    // Lấy lease trước khi Hibernate tạo schema (ddl-auto)
+    @Component
+    static class EntityManagerFactoryDependsOnNodeLease extends EntityManagerFactoryDependsOnPostProcessor {
+        EntityManagerFactoryDependsOnNodeLease() {
+            super("nodeLease");
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.bookstore.controller;
 import com.bookstore.dto.AuthorSummaryDTO;
 import com.bookstore.entity.Author;
 import com.bookstore.service.AuthorService;
+import com.bookstore.service.BulkOperationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -29,6 +30,9 @@ public class AdminAuthorController {
     @Autowired
     private AuthorService authorService;
 
+    @Autowired
+    private BulkOperationService bulkOperationService;
+
     // Get all unique nationalities
     @GetMapping("/nationalities")
     public ResponseEntity<?> getAllNationalities() {
@@ -246,22 +250,22 @@ public class AdminAuthorController {
     public ResponseEntity<?> bulkDeleteAuthors(@RequestBody Map<String, List<Long>> requestData) {
         try {
             List<Long> authorIds = requestData.get("ids");
-            
-            // Check if any author has books
-            for (Long authorId : authorIds) {
-                if (authorService.hasBooks(authorId)) {
-                    Map<String, String> error = new HashMap<>();
-                    error.put("error", "Cannot delete some authors");
-                    error.put("message", "Some authors have books associated. Please remove or reassign books first.");
-                    return ResponseEntity.badRequest().body(error);
-                }
-            }
-            
-            authorService.bulkDeleteAuthors(authorIds);
-            
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "Authors deleted successfully");
+
+            // Tác giả còn sách được bỏ qua và báo trong results (IN_USE), các tác giả còn lại vẫn bị xóa
+            BulkOperationService.BulkResult result = bulkOperationService.deleteAuthors(authorIds);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", result.getFailed() == 0 ? "Authors deleted successfully"
+                : "Some authors have books associated. Please remove or reassign books first.");
+            response.put("deletedCount", result.getSucceeded());
+            response.put("failedCount", result.getFailed());
+            response.put("results", result.getResults());
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid author IDs");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Failed to delete authors");
@@ -1,24 +1,36 @@
 package com.bookstore.controller;
 
+import com.bookstore.dto.BookCursor;
 import com.bookstore.dto.BookSummaryDTO;
 import com.bookstore.entity.Book;
 import com.bookstore.entity.Author;
 import com.bookstore.entity.Category;
+import com.bookstore.repository.BookSpecifications;
 import com.bookstore.service.BookService;
 import com.bookstore.service.AuthorService;
+import com.bookstore.service.BookImportService;
+import com.bookstore.service.BulkOperationService;
+import com.bookstore.service.CatalogExportService;
 import com.bookstore.service.CategoryService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -37,6 +49,15 @@ public class AdminBookController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private CatalogExportService catalogExportService;
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private BulkOperationService bulkOperationService;
+
     // Lấy danh sách sách với pagination, search và filter
     @GetMapping
     public ResponseEntity<?> getAllBooks(
@@ -49,25 +70,37 @@ public class AdminBookController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
-            @RequestParam(required = false) Boolean inStock
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean keyset,
+            @RequestParam(defaultValue = "false") boolean includeTotal
     ) {
         try {
-            // Tạo Sort object
+            size = bookService.checkPageSize(size);
+
+            // Keyset mode: seek theo cursor, bỏ qua COUNT trừ khi includeTotal = true
+            if (keyset || after != null) {
+                BookCursor cursor = after != null ? BookCursor.decode(after) : BookCursor.first(sortBy, sortDir);
+                return ResponseEntity.ok(bookService.getBooksAfter(
+                    BookSpecifications.matching(title, author, categoryId, minPrice, maxPrice, inStock),
+                    cursor, size, includeTotal).toResponse());
+            }
+
+            // Tạo Sort object (chỉ cho phép các trường trong whitelist)
+            if (!BookSpecifications.SORTABLE_FIELDS.contains(sortBy)) {
+                throw new IllegalArgumentException("Không hỗ trợ sắp xếp theo trường: " + sortBy);
+            }
             Sort sort = sortDir.equalsIgnoreCase("desc") 
                 ? Sort.by(sortBy).descending() 
                 : Sort.by(sortBy).ascending();
             
             Pageable pageable = PageRequest.of(page, size, sort);
             
-            // Gọi service với filters
-            Page<Book> booksPage = bookService.getAllBooksWithFilters(
-                pageable, title, author, categoryId, minPrice, maxPrice, inStock
+            // Gọi service với filters (projection, không load entity)
+            Page<BookSummaryDTO> booksPage = bookService.getBookSummaries(
+                BookSpecifications.matching(title, author, categoryId, minPrice, maxPrice, inStock), pageable
             );
-            
-            // Convert to DTOs với full details (sử dụng JOIN FETCH)
-            List<BookSummaryDTO> bookDTOs = booksPage.getContent().stream()
-                .map(BookSummaryDTO::fromBookWithDetails)
-                .collect(Collectors.toList());
+            List<BookSummaryDTO> bookDTOs = booksPage.getContent();
             
             Map<String, Object> response = new HashMap<>();
             response.put("content", bookDTOs);
@@ -80,6 +113,11 @@ public class AdminBookController {
             
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid query parameters");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Failed to fetch books");
@@ -88,6 +126,102 @@ public class AdminBookController {
         }
     }
 
+    // Export toàn bộ catalog (hoặc các sách thay đổi từ updatedSince) dạng NDJSON/CSV, ghi dần ra response
+    @GetMapping("/export")
+    public ResponseEntity<?> exportBooks(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String updatedSince
+    ) {
+        try {
+            CatalogExportService.Format exportFormat = CatalogExportService.Format.fromCode(format);
+            LocalDateTime since = parseUpdatedSince(updatedSince);
+
+            StreamingResponseBody body = out -> catalogExportService.export(exportFormat, since, out);
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"books-export." + exportFormat.getCode() + "\"")
+                .body(body);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid export parameters");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Import sách hàng loạt từ file CSV/JSON, trả về số dòng thành công và lỗi từng dòng.
+    // Multipart bị giới hạn chung như upload ảnh (5MB); file lớn hơn gửi thẳng trong body (endpoint bên dưới)
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importBooks(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String format
+    ) {
+        try {
+            if (file.isEmpty()) {
+                throw new IllegalArgumentException("File import không được để trống");
+            }
+            checkImportSize(file.getSize());
+            BookImportService.Format importFormat = BookImportService.Format.detect(format, file.getOriginalFilename());
+            BookImportService.ImportResult result = bookImportService.importBooks(file.getInputStream(), importFormat);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid import file");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to import books");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    // Import với nội dung file là body (Content-Type text/csv hoặc application/json), giới hạn app.import.max-file-size
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> importBooksFromBody(
+            HttpServletRequest request,
+            @RequestParam(required = false) String format
+    ) {
+        try {
+            checkImportSize(request.getContentLengthLong());
+            String contentType = request.getContentType() != null ? request.getContentType().toLowerCase() : "";
+            BookImportService.Format importFormat = BookImportService.Format.detect(
+                format != null ? format : contentType.contains("json") ? "json" : "csv", null);
+            BookImportService.ImportResult result = bookImportService.importBooks(request.getInputStream(), importFormat);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid import file");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to import books");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    // Từ chối sớm theo kích thước khai báo; body không khai báo (-1) được giới hạn khi đọc trong BookImportService
+    private void checkImportSize(long size) {
+        long max = bookImportService.getMaxFileSize().toBytes();
+        if (size > max) {
+            throw new IllegalArgumentException("File import vượt quá dung lượng cho phép ("
+                + bookImportService.getMaxFileSize().toMegabytes() + "MB)");
+        }
+    }
+
+    // Nhận ISO date (2024-01-31) hoặc date-time (2024-01-31T08:00:00)
+    private LocalDateTime parseUpdatedSince(String updatedSince) {
+        if (updatedSince == null || updatedSince.trim().isEmpty()) {
+            return null;
+        }
+        String value = updatedSince.trim();
+        return value.length() == 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value);
+    }
+
     // Lấy sách theo ID
     @GetMapping("/{id}")
     public ResponseEntity<?> getBookById(@PathVariable Long id) {
@@ -305,13 +439,20 @@ public class AdminBookController {
                 return ResponseEntity.badRequest().body(error);
             }
 
-            int deletedCount = bookService.deleteBulkBooks(ids);
-            
+            BulkOperationService.BulkResult result = bulkOperationService.deleteBooks(ids);
+
             Map<String, Object> response = new HashMap<>();
-            response.put("message", "Books deleted successfully");
-            response.put("deletedCount", deletedCount);
+            response.put("message", result.getFailed() == 0 ? "Books deleted successfully" : "Some books could not be deleted");
+            response.put("deletedCount", result.getSucceeded());
+            response.put("failedCount", result.getFailed());
+            response.put("results", result.getResults());
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid book IDs");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Failed to delete books");
@@ -1,8 +1,14 @@
 package com.bookstore.controller;
 
+import com.bookstore.cache.BookDetailCache;
+import com.bookstore.ranking.SalesRanking;
+import com.bookstore.service.AsyncCheckoutService;
 import com.bookstore.service.AuthorService;
 import com.bookstore.service.BookService;
 import com.bookstore.service.CategoryService;
+import com.bookstore.service.CheckoutService;
+import com.bookstore.service.InMemoryInventory;
+import com.bookstore.service.InventoryService;
 import com.bookstore.service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -30,6 +36,21 @@ public class AdminController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private BookDetailCache bookDetailCache;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private InMemoryInventory inMemoryInventory;
+
+    @Autowired
+    private AsyncCheckoutService asyncCheckoutService;
+
     // Dashboard tổng quan
     @GetMapping("/dashboard")
     public ResponseEntity<?> getDashboard() {
@@ -76,6 +97,60 @@ public class AdminController {
         }
     }
 
+    // Thống kê cache chi tiết sách (hit/miss/eviction)
+    @GetMapping("/cache/statistics")
+    public ResponseEntity<?> getCacheStatistics() {
+        try {
+            return ResponseEntity.ok(bookDetailCache.getStatistics());
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to get cache statistics");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Xóa toàn bộ cache chi tiết sách
+    @DeleteMapping("/cache")
+    public ResponseEntity<?> clearCache() {
+        bookDetailCache.clear();
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Cache cleared successfully");
+        return ResponseEntity.ok(response);
+    }
+
+    // Thống kê giữ/hoàn kho (số đơn giữ hàng thành công, bị từ chối vì hết hàng, đã hoàn kho) và chế độ in-memory
+    @GetMapping("/inventory/statistics")
+    public ResponseEntity<?> getInventoryStatistics() {
+        try {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("reservations", inventoryService.getStats());
+            stats.put("inMemory", inMemoryInventory.getStatistics());
+            return ResponseEntity.ok(stats);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to get inventory statistics");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Thống kê pipeline đặt hàng (số câu lệnh DB trung bình/tối đa mỗi đơn, thời gian xử lý) và hàng đợi đặt hàng bất đồng bộ
+    @GetMapping("/checkout/statistics")
+    public ResponseEntity<?> getCheckoutStatistics() {
+        try {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("pipeline", checkoutService.getStats());
+            stats.put("async", asyncCheckoutService.getStatistics());
+            return ResponseEntity.ok(stats);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to get checkout statistics");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     // Thống kê chi tiết đơn hàng
     @GetMapping("/orders/statistics")
     public ResponseEntity<?> getOrdersStatistics() {
@@ -154,9 +229,10 @@ public class AdminController {
 
     // Sách bán chạy nhất
     @GetMapping("/bestsellers")
-    public ResponseEntity<?> getBestSellers(@RequestParam(defaultValue = "10") int limit) {
+    public ResponseEntity<?> getBestSellers(@RequestParam(defaultValue = "10") int limit,
+                                            @RequestParam(defaultValue = "all") String window) {
         try {
-            return ResponseEntity.ok(bookService.getBestSellingBooks(limit));
+            return ResponseEntity.ok(bookService.getBestSellingBooks(limit, SalesRanking.Window.fromCode(window)));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Failed to get bestsellers");
@@ -2,6 +2,7 @@ package com.bookstore.controller;
 
 import com.bookstore.dto.UserSummaryDTO;
 import com.bookstore.entity.User;
+import com.bookstore.service.BulkOperationService;
 import com.bookstore.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -13,6 +14,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +29,9 @@ public class AdminUserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private BulkOperationService bulkOperationService;
+
     // Get all users with pagination and filters
     @GetMapping
     public ResponseEntity<?> getAllUsers(
@@ -215,11 +220,19 @@ public class AdminUserController {
     public ResponseEntity<?> bulkDeleteUsers(@RequestBody Map<String, List<Long>> requestData) {
         try {
             List<Long> userIds = requestData.get("ids");
-            userService.bulkDeleteUsers(userIds);
-            
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "Users deleted successfully");
+            BulkOperationService.BulkResult result = bulkOperationService.deleteUsers(userIds);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", result.getFailed() == 0 ? "Users deleted successfully" : "Some users could not be deleted");
+            response.put("deletedCount", result.getSucceeded());
+            response.put("failedCount", result.getFailed());
+            response.put("results", result.getResults());
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid user IDs");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Failed to delete users");
@@ -227,4 +240,38 @@ public class AdminUserController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
         }
     }
+
+    // Bulk enable/disable users
+    @PatchMapping("/bulk-status")
+    public ResponseEntity<?> bulkUpdateUserStatus(@RequestBody Map<String, Object> requestData) {
+        try {
+            Object ids = requestData.get("ids");
+            Object enabled = requestData.get("enabled");
+            if (!(ids instanceof List) || !(enabled instanceof Boolean)) {
+                throw new IllegalArgumentException("Cần truyền ids (danh sách) và enabled (true/false)");
+            }
+            List<Long> userIds = new ArrayList<>();
+            for (Object id : (List<?>) ids) {
+                userIds.add(id != null ? Long.valueOf(id.toString()) : null);
+            }
+            BulkOperationService.BulkResult result = bulkOperationService.setUsersEnabled(userIds, (Boolean) enabled);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", result.getFailed() == 0 ? "Users updated successfully" : "Some users could not be updated");
+            response.put("updatedCount", result.getSucceeded());
+            response.put("failedCount", result.getFailed());
+            response.put("results", result.getResults());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid bulk status request");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to update users");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
 }
@@ -1,11 +1,13 @@
 package com.bookstore.controller;
 
+import com.bookstore.cache.CatalogVersions;
 import com.bookstore.entity.Author;
 import com.bookstore.repository.AuthorRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -20,6 +22,9 @@ public class AuthorController {
     @Autowired
     private AuthorRepository authorRepository;
 
+    @Autowired
+    private CatalogVersions catalogVersions;
+
     // Test endpoint - đặt lên đầu
     @GetMapping("/test")
     public ResponseEntity<?> testRepository() {
@@ -68,8 +73,14 @@ public class AuthorController {
 
     // Lấy tất cả tác giả - dùng Map để tránh lazy loading
     @GetMapping
-    public ResponseEntity<?> getAllAuthors() {
+    public ResponseEntity<?> getAllAuthors(WebRequest webRequest) {
         try {
+            // Danh sách tác giả không đổi -> 304 trước khi query
+            CatalogVersions.Version version = catalogVersions.authors();
+            ResponseEntity<?> notModified = ConditionalGet.notModified(webRequest, version);
+            if (notModified != null) {
+                return notModified;
+            }
             List<Author> authors = authorRepository.findAll();
             List<Map<String, Object>> result = new ArrayList<>();
             
@@ -77,7 +88,7 @@ public class AuthorController {
                 result.add(authorToMap(author));
             }
             
-            return ResponseEntity.ok(result);
+            return ConditionalGet.ok(version).body(result);
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, String> error = new HashMap<>();
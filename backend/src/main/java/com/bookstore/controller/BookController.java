@@ -1,20 +1,35 @@
 package com.bookstore.controller;
 
+import com.bookstore.cache.CatalogVersions;
+import com.bookstore.dto.BookCursor;
 import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.ranking.SalesRanking;
 import com.bookstore.entity.Book;
 import com.bookstore.repository.BookRepository;
+import com.bookstore.repository.BookSpecifications;
+import com.bookstore.search.AutocompleteIndex;
+import com.bookstore.search.FacetIndex;
+import com.bookstore.search.PriceIndex;
+import com.bookstore.service.BookService;
+import com.bookstore.service.HomeFeedService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.math.BigDecimal;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -22,21 +37,32 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = {"http://localhost:3000", "http://127.0.0.1:3000"})
 public class BookController {
 
+    private static final int MAX_RANDOM_LIMIT = 50;
+    private static final int MAX_PRICE_BUCKETS = 50;
+    private static final int MAX_RELATED_LIMIT = 20;
+
     @Autowired
     private BookRepository bookRepository;
 
-    // Lấy sách mới nhất - dùng DTO để tránh lazy loading
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private HomeFeedService homeFeedService;
+
+    @Autowired
+    private AutocompleteIndex autocompleteIndex;
+
+    @Autowired
+    private CatalogVersions catalogVersions;
+
+    // Lấy sách mới nhất - trả JSON đã tính sẵn từ HomeFeedService
     @GetMapping("/latest")
     public ResponseEntity<?> getLatestBooks(@RequestParam(defaultValue = "8") int limit) {
         try {
-            Pageable pageable = PageRequest.of(0, limit);
-            List<Book> books = bookRepository.findAllByOrderByCreatedAtDesc(pageable).getContent();
-            
-            List<BookSummaryDTO> result = books.stream()
-                .map(BookSummaryDTO::new) // Sử dụng constructor an toàn
-                .collect(Collectors.toList());
-            
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(homeFeedService.getLatestJson(limit));
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, String> error = new HashMap<>();
@@ -46,18 +72,19 @@ public class BookController {
         }
     }
 
-    // Lấy sách bán chạy - dùng DTO để tránh lazy loading
+    // Lấy sách bán chạy theo số lượng đã bán (window: 24h, 7d, 30d, all) - trả JSON đã tính sẵn
     @GetMapping("/bestsellers")
-    public ResponseEntity<?> getBestSellingBooks(@RequestParam(defaultValue = "4") int limit) {
+    public ResponseEntity<?> getBestSellingBooks(@RequestParam(defaultValue = "4") int limit,
+                                                 @RequestParam(defaultValue = "7d") String window) {
         try {
-            Pageable pageable = PageRequest.of(0, limit);
-            List<Book> books = bookRepository.findAllByOrderByStockQuantityDesc(pageable).getContent();
-            
-            List<BookSummaryDTO> result = books.stream()
-                .map(BookSummaryDTO::new) // Sử dụng constructor an toàn
-                .collect(Collectors.toList());
-            
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(homeFeedService.getBestsellersJson(limit, SalesRanking.Window.fromCode(window)));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid window");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, String> error = new HashMap<>();
@@ -67,15 +94,198 @@ public class BookController {
         }
     }
 
+    // Tìm kiếm có facet: trả về trang kết quả và số lượng theo category/author/language/price/inStock
+    @GetMapping("/facets")
+    public ResponseEntity<?> getFacetedBooks(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) List<String> category,
+            @RequestParam(required = false) List<String> author,
+            @RequestParam(required = false) List<String> language,
+            @RequestParam(required = false) List<String> price,
+            @RequestParam(required = false) List<String> inStock,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(name = "limit", defaultValue = "10") int limit
+    ) {
+        try {
+            bookService.checkPage(page);
+            limit = bookService.checkPageSize(limit);
+            Map<FacetIndex.Facet, Set<String>> selections = new EnumMap<>(FacetIndex.Facet.class);
+            putSelection(selections, FacetIndex.Facet.CATEGORY, category);
+            putSelection(selections, FacetIndex.Facet.AUTHOR, author);
+            putSelection(selections, FacetIndex.Facet.LANGUAGE, language);
+            putSelection(selections, FacetIndex.Facet.PRICE, price);
+            putSelection(selections, FacetIndex.Facet.IN_STOCK, inStock);
+
+            FacetIndex.FacetResult result = bookService.facetedSearch(q, selections, sort, page, limit);
+
+            int totalPages = limit > 0 ? (result.getTotalElements() + limit - 1) / limit : 0;
+            Map<String, Object> response = new HashMap<>();
+            response.put("content", result.getContent());
+            response.put("totalElements", result.getTotalElements());
+            response.put("totalPages", totalPages);
+            response.put("number", page);
+            response.put("size", limit);
+            response.put("first", page == 0);
+            response.put("last", page + 1 >= totalPages);
+            response.put("facets", result.getFacets());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid query parameters");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to fetch faceted books");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    // Giá trị facet được so khớp không phân biệt hoa thường (language lưu dạng chữ thường)
+    private void putSelection(Map<FacetIndex.Facet, Set<String>> selections, FacetIndex.Facet facet, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        Set<String> normalized = new HashSet<>();
+        for (String value : values) {
+            if (value != null && !value.trim().isEmpty()) {
+                normalized.add(value.trim().toLowerCase());
+            }
+        }
+        selections.put(facet, normalized);
+    }
+
+    // Lọc theo khoảng giá qua PriceIndex (sort: price_asc, price_desc)
+    @GetMapping("/price-range")
+    public ResponseEntity<?> getBooksByPriceRange(
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "price_asc") String sort,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(name = "limit", defaultValue = "10") int limit,
+            WebRequest webRequest
+    ) {
+        try {
+            CatalogVersions.Version version = catalogVersions.books();
+            ResponseEntity<?> notModified = ConditionalGet.notModified(webRequest, version);
+            if (notModified != null) {
+                return notModified;
+            }
+            if (!"price_asc".equals(sort) && !"price_desc".equals(sort)) {
+                throw new IllegalArgumentException("sort phải là price_asc hoặc price_desc");
+            }
+
+            Page<BookSummaryDTO> booksPage = bookService.getBooksByPriceRange(
+                    minPrice, maxPrice, "price_desc".equals(sort), page, limit);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("content", booksPage.getContent());
+            response.put("totalElements", booksPage.getTotalElements());
+            response.put("totalPages", booksPage.getTotalPages());
+            response.put("number", booksPage.getNumber());
+            response.put("size", booksPage.getSize());
+            response.put("first", booksPage.isFirst());
+            response.put("last", booksPage.isLast());
+            return ConditionalGet.ok(version).body(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid price range parameters");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to fetch books by price range");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    // Histogram giá cho thanh trượt: số sách theo từng khoảng, không query DB
+    @GetMapping("/price-histogram")
+    public ResponseEntity<?> getPriceHistogram(
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "10") int buckets,
+            WebRequest webRequest
+    ) {
+        try {
+            CatalogVersions.Version version = catalogVersions.books();
+            ResponseEntity<?> notModified = ConditionalGet.notModified(webRequest, version);
+            if (notModified != null) {
+                return notModified;
+            }
+            PriceIndex.Histogram histogram = bookService.getPriceHistogram(
+                    minPrice, maxPrice, Math.min(buckets, MAX_PRICE_BUCKETS));
+            return ConditionalGet.ok(version).body(histogram);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid histogram parameters");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Gợi ý khi gõ ô tìm kiếm: tên sách, tác giả, thể loại (type: book, author, category - bỏ trống = tất cả)
+    @GetMapping("/autocomplete")
+    public ResponseEntity<?> autocomplete(@RequestParam String q,
+                                          @RequestParam(required = false) String type,
+                                          @RequestParam(defaultValue = "8") int limit) {
+        try {
+            AutocompleteIndex.Type suggestionType = type != null && !type.isEmpty()
+                ? AutocompleteIndex.Type.valueOf(type.toUpperCase())
+                : null;
+            return ResponseEntity.ok(autocompleteIndex.suggest(q, suggestionType, limit));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid suggestion type");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Lấy sách ngẫu nhiên còn hàng (widget "khám phá")
+    @GetMapping("/random")
+    public ResponseEntity<?> getRandomBooks(@RequestParam(defaultValue = "8") int limit) {
+        try {
+            List<BookSummaryDTO> result = bookService.getRandomBooks(Math.min(limit, MAX_RANDOM_LIMIT)).stream()
+                .map(BookSummaryDTO::fromBookWithDetails)
+                .collect(Collectors.toList());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to get random books");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    // Sách thường được mua cùng (trang chi tiết sách), trả danh sách rỗng nếu chưa có dữ liệu đơn hàng
+    @GetMapping("/{id}/related")
+    public ResponseEntity<?> getRelatedBooks(@PathVariable Long id, @RequestParam(defaultValue = "8") int limit) {
+        try {
+            return ResponseEntity.ok(bookService.getRelatedBooks(id, Math.min(Math.max(limit, 0), MAX_RELATED_LIMIT)));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to get related books");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
     // Lấy sách theo ID
     @GetMapping("/{id}")
-    public ResponseEntity<?> getBookById(@PathVariable Long id) {
+    public ResponseEntity<?> getBookById(@PathVariable Long id, WebRequest webRequest) {
         try {
-            Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Book not found"));
-            
-            BookSummaryDTO dto = new BookSummaryDTO(book);
-            return ResponseEntity.ok(dto);
+            // Client đã có bản hiện tại -> 304, không chạm cache/DB
+            CatalogVersions.Version version = catalogVersions.book(id);
+            ResponseEntity<?> notModified = ConditionalGet.notModified(webRequest, version);
+            if (notModified != null) {
+                return notModified;
+            }
+            BookSummaryDTO dto = bookService.getBookSummaryById(id);
+            return ConditionalGet.ok(version).body(dto);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Book not found");
@@ -92,24 +302,60 @@ public class BookController {
             @RequestParam(required = false) Long category,
             @RequestParam(required = false) String title,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDir
+            @RequestParam(defaultValue = "desc") String sortDir,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean keyset,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(defaultValue = "keyword") String searchMode,
+            WebRequest webRequest
     ) {
         try {
-            Pageable pageable = PageRequest.of(page, limit, 
-                    sortDir.equalsIgnoreCase("desc") ? Sort.by(sortBy).descending() : Sort.by(sortBy).ascending());
-            Page<Book> booksPage;
-
-            if (title != null && !title.trim().isEmpty()) {
-                booksPage = bookRepository.findByTitleContainingIgnoreCase(title, pageable);
-            } else if (category != null) {
-                booksPage = bookRepository.findByCategoryId(category, pageable);
+            limit = bookService.checkPageSize(limit);
+
+            // Version của cả danh sách: catalog không đổi thì trả 304 trước mọi query
+            CatalogVersions.Version version = catalogVersions.books();
+            ResponseEntity<?> notModified = ConditionalGet.notModified(webRequest, version);
+            if (notModified != null) {
+                return notModified;
+            }
+
+            boolean searching = title != null && !title.trim().isEmpty();
+
+            // Keyset mode: seek theo cursor thay vì OFFSET (tìm kiếm theo title vẫn xếp hạng qua index)
+            if (!searching && (keyset || after != null)) {
+                BookCursor cursor = after != null ? BookCursor.decode(after) : BookCursor.first(sortBy, sortDir);
+                return ConditionalGet.ok(version).body(bookService.getBooksAfter(
+                        BookSpecifications.hasCategory(category), cursor, limit, includeTotal).toResponse());
+            }
+
+            Page<BookSummaryDTO> booksPage;
+
+            if (searching) {
+                // searchMode: keyword (inverted index), fuzzy (chịu lỗi gõ/thiếu dấu),
+                // auto (keyword, không có kết quả thì chuyển sang fuzzy)
+                switch (searchMode) {
+                    case "keyword":
+                        booksPage = bookService.searchBooksByKeyword(title, category, page, limit);
+                        break;
+                    case "fuzzy":
+                        booksPage = bookService.fuzzySearchBooks(title, category, page, limit);
+                        break;
+                    case "auto":
+                        booksPage = bookService.searchBooksByKeyword(title, category, page, limit);
+                        if (booksPage.getTotalElements() == 0) {
+                            booksPage = bookService.fuzzySearchBooks(title, category, page, limit);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("searchMode phải là keyword, fuzzy hoặc auto");
+                }
             } else {
-                booksPage = bookRepository.findAll(pageable);
+                Pageable pageable = PageRequest.of(page, limit, 
+                        sortDir.equalsIgnoreCase("desc") ? Sort.by(sortBy).descending() : Sort.by(sortBy).ascending());
+                booksPage = bookService.getBookSummaries(BookSpecifications.hasCategory(category), pageable);
             }
 
-            List<BookSummaryDTO> bookDTOs = booksPage.getContent().stream()
-                    .map(BookSummaryDTO::new)
-                    .collect(Collectors.toList());
+            List<BookSummaryDTO> bookDTOs = booksPage.getContent();
 
             Map<String, Object> response = new HashMap<>();
             response.put("content", bookDTOs);
@@ -119,7 +365,12 @@ public class BookController {
             response.put("size", booksPage.getSize());
             response.put("first", booksPage.isFirst());
             response.put("last", booksPage.isLast());
-            return ResponseEntity.ok(response);
+            return ConditionalGet.ok(version).body(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid pagination parameters");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Failed to fetch books");
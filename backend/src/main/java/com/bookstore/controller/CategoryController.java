@@ -1,14 +1,17 @@
 package com.bookstore.controller;
 
+import com.bookstore.cache.CatalogVersions;
 import com.bookstore.dto.CategoryDTO;
 import com.bookstore.entity.Category;
 import com.bookstore.repository.CategoryRepository;
+import com.bookstore.service.CategoryService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -23,6 +26,12 @@ public class CategoryController {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CatalogVersions catalogVersions;
+
     // Helper method để convert Category thành Map an toàn
     private Map<String, Object> categoryToMap(Category category) {
         Map<String, Object> map = new HashMap<>();
@@ -33,18 +42,34 @@ public class CategoryController {
         return map;
     }
 
-    // Lấy tất cả thể loại (public) - dùng trực tiếp repository
+    // Convert read model (đã có số sách thật) thành Map
+    private Map<String, Object> summaryToMap(CategoryDTO category) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", category.getId());
+        map.put("name", category.getName());
+        map.put("description", category.getDescription());
+        map.put("bookCount", category.getBookCount());
+        map.put("inStockBookCount", category.getInStockBookCount());
+        return map;
+    }
+
+    // Lấy tất cả thể loại kèm số sách (public) - read model GROUP BY có cache
     @GetMapping
-    public ResponseEntity<?> getAllCategories() {
+    public ResponseEntity<?> getAllCategories(WebRequest webRequest) {
         try {
-            List<Category> categories = categoryRepository.findAllByOrderByNameAsc();
+            CatalogVersions.Version version = catalogVersions.categories();
+            ResponseEntity<?> notModified = ConditionalGet.notModified(webRequest, version);
+            if (notModified != null) {
+                return notModified;
+            }
+            List<CategoryDTO> categories = categoryService.getCategorySummaries();
             List<Map<String, Object>> result = new ArrayList<>();
             
-            for (Category cat : categories) {
-                result.add(categoryToMap(cat));
+            for (CategoryDTO cat : categories) {
+                result.add(summaryToMap(cat));
             }
             
-            return ResponseEntity.ok(result);
+            return ConditionalGet.ok(version).body(result);
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, String> error = new HashMap<>();
@@ -56,11 +81,15 @@ public class CategoryController {
 
     // Lấy thể loại theo ID (public)
     @GetMapping("/{id}")
-    public ResponseEntity<?> getCategoryById(@PathVariable Long id) {
+    public ResponseEntity<?> getCategoryById(@PathVariable Long id, WebRequest webRequest) {
         try {
-            Category category = categoryRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Category not found"));
-            return ResponseEntity.ok(categoryToMap(category));
+            CatalogVersions.Version version = catalogVersions.categories();
+            ResponseEntity<?> notModified = ConditionalGet.notModified(webRequest, version);
+            if (notModified != null) {
+                return notModified;
+            }
+            CategoryDTO category = categoryService.getCategorySummaryById(id);
+            return ConditionalGet.ok(version).body(summaryToMap(category));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Category not found");
@@ -71,16 +100,21 @@ public class CategoryController {
 
     // Tìm kiếm thể loại theo tên (public)
     @GetMapping("/search")
-    public ResponseEntity<?> searchCategories(@RequestParam String name) {
+    public ResponseEntity<?> searchCategories(@RequestParam String name, WebRequest webRequest) {
         try {
-            List<Category> categories = categoryRepository.findByNameContainingIgnoreCase(name);
+            CatalogVersions.Version version = catalogVersions.categories();
+            ResponseEntity<?> notModified = ConditionalGet.notModified(webRequest, version);
+            if (notModified != null) {
+                return notModified;
+            }
+            List<CategoryDTO> categories = categoryService.searchCategorySummaries(name);
             List<Map<String, Object>> result = new ArrayList<>();
             
-            for (Category cat : categories) {
-                result.add(categoryToMap(cat));
+            for (CategoryDTO cat : categories) {
+                result.add(summaryToMap(cat));
             }
             
-            return ResponseEntity.ok(result);
+            return ConditionalGet.ok(version).body(result);
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, String> error = new HashMap<>();
@@ -92,16 +126,21 @@ public class CategoryController {
 
     // Lấy thể loại có sách (public)
     @GetMapping("/with-books")
-    public ResponseEntity<?> getCategoriesWithBooks() {
+    public ResponseEntity<?> getCategoriesWithBooks(WebRequest webRequest) {
         try {
-            List<Category> categories = categoryRepository.findByBooksIsNotEmpty();
+            CatalogVersions.Version version = catalogVersions.categories();
+            ResponseEntity<?> notModified = ConditionalGet.notModified(webRequest, version);
+            if (notModified != null) {
+                return notModified;
+            }
+            List<CategoryDTO> categories = categoryService.getCategorySummariesWithBooks();
             List<Map<String, Object>> result = new ArrayList<>();
             
-            for (Category cat : categories) {
-                result.add(categoryToMap(cat));
+            for (CategoryDTO cat : categories) {
+                result.add(summaryToMap(cat));
             }
             
-            return ResponseEntity.ok(result);
+            return ConditionalGet.ok(version).body(result);
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, String> error = new HashMap<>();
@@ -125,7 +164,7 @@ public class CategoryController {
                 return ResponseEntity.badRequest().body(error);
             }
             
-            Category createdCategory = categoryRepository.save(category);
+            Category createdCategory = categoryService.createCategory(category);
             return ResponseEntity.status(HttpStatus.CREATED).body(categoryToMap(createdCategory));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -151,11 +190,8 @@ public class CategoryController {
                 return ResponseEntity.badRequest().body(error);
             }
             
-            category.setName(categoryDetails.getName());
-            category.setDescription(categoryDetails.getDescription());
-            
-            Category updatedCategory = categoryRepository.save(category);
-            return ResponseEntity.ok(categoryToMap(updatedCategory));
+            Category updatedCategory = categoryService.updateCategory(id, categoryDetails);
+            return ResponseEntity.ok(summaryToMap(categoryService.getCategorySummaryById(updatedCategory.getId())));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Failed to update category");
@@ -169,13 +205,8 @@ public class CategoryController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> deleteCategory(@PathVariable Long id) {
         try {
-            Category category = categoryRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Category not found"));
-            
-            // Kiểm tra có sách nào thuộc thể loại này không mà không truy cập lazy collection
-            // Có thể dùng count query riêng nếu cần
-            
-            categoryRepository.deleteById(id);
+            // Service từ chối xóa nếu thể loại còn sách (cascade sẽ xóa luôn sách mà không cập nhật index)
+            categoryService.deleteCategory(id);
             Map<String, String> response = new HashMap<>();
             response.put("message", "Đã xóa thể loại thành công");
             return ResponseEntity.ok(response);
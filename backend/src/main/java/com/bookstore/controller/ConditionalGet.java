@@ -0,0 +1,36 @@
+package com.bookstore.controller;
+
+import com.bookstore.cache.CatalogVersions;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+// Hỗ trợ conditional GET cho các endpoint catalog public: ETag lấy từ CatalogVersions (không gửi Last-Modified,
+// xem CatalogVersions)
+final class ConditionalGet {
+
+    private ConditionalGet() {
+    }
+
+    // 304 nếu If-None-Match khớp version hiện tại (gọi trước khi query), ngược lại null
+    static ResponseEntity<?> notModified(WebRequest webRequest, CatalogVersions.Version version) {
+        if (version != null && webRequest.checkNotModified(version.getETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(version.getETag())
+                .cacheControl(CacheControl.noCache())
+                .build();
+        }
+        return null;
+    }
+
+    // 200 kèm ETag; no-cache để browser/CDN lưu lại nhưng luôn hỏi lại bằng If-None-Match
+    static ResponseEntity.BodyBuilder ok(CatalogVersions.Version version) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (version != null) {
+            builder.eTag(version.getETag())
+                .cacheControl(CacheControl.noCache());
+        }
+        return builder;
+    }
+}
@@ -6,7 +6,10 @@ import com.bookstore.dto.OrderItemSummaryDTO;
 import com.bookstore.entity.Order;
 import com.bookstore.entity.OrderItem;
 import com.bookstore.entity.OrderStatus;
+import com.bookstore.entity.User;
+import com.bookstore.service.AsyncCheckoutService;
 import com.bookstore.service.AuthService;
+import com.bookstore.service.IdempotencyService;
 import com.bookstore.service.OrderService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +19,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -35,15 +39,62 @@ public class OrderController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private AsyncCheckoutService asyncCheckoutService;
+
     // Tạo đơn hàng mới (customer)
     @PostMapping
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
-    public ResponseEntity<?> createOrder(@Valid @RequestBody OrderDTO orderDTO) {
+    public ResponseEntity<?> createOrder(@Valid @RequestBody OrderDTO orderDTO,
+                                         @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             Long userId = authService.getCurrentUser().getId();
+            // Có Idempotency-Key: request lặp lại (client retry khi timeout) nhận lại đúng đơn đã tạo
+            if (idempotencyKey != null) {
+                IdempotencyService.Outcome outcome = idempotencyService.placeOrder(userId, idempotencyKey, orderDTO);
+                return ResponseEntity.status(HttpStatus.CREATED)
+                    .header("Idempotent-Replayed", String.valueOf(outcome.isReplayed()))
+                    .body(outcome.getOrder());
+            }
             Order order = orderService.createOrder(userId, orderDTO);
             OrderSummaryDTO dto = OrderSummaryDTO.fromOrderWithDetails(order);
             return ResponseEntity.status(HttpStatus.CREATED).body(dto);
+        } catch (IdempotencyService.KeyConflictException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Idempotency key conflict");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to create order");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Đặt hàng bất đồng bộ: trả 202 kèm token ngay khi đơn vào hàng đợi, hàng đợi đầy thì trả 429
+    @PostMapping("/async")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
+    public ResponseEntity<?> createOrderAsync(@Valid @RequestBody OrderDTO orderDTO) {
+        try {
+            Long userId = authService.getCurrentUser().getId();
+            AsyncCheckoutService.TicketStatus ticket = asyncCheckoutService.submit(userId, orderDTO);
+            Map<String, Object> response = new HashMap<>();
+            response.put("token", ticket.getToken());
+            response.put("status", ticket.getStatus());
+            response.put("statusUrl", "/api/orders/async/" + ticket.getToken());
+            response.put("eventsUrl", "/api/orders/async/" + ticket.getToken() + "/events");
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header("Location", "/api/orders/async/" + ticket.getToken())
+                .body(response);
+        } catch (AsyncCheckoutService.QueueFullException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Order queue is full");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "1").body(error);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Failed to create order");
@@ -52,6 +103,38 @@ public class OrderController {
         }
     }
 
+    // Trạng thái đơn đặt bất đồng bộ (polling)
+    @GetMapping("/async/{token}")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
+    public ResponseEntity<?> getAsyncOrderStatus(@PathVariable String token) {
+        try {
+            User user = authService.getCurrentUser();
+            AsyncCheckoutService.TicketStatus ticket = asyncCheckoutService.getStatus(
+                token, user.getId(), user.getRole().name().equals("ADMIN"));
+            if (ticket == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(ticket);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to get order status");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Nhận kết quả đơn đặt bất đồng bộ qua Server-Sent Events
+    @GetMapping(value = "/async/{token}/events", produces = "text/event-stream")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
+    public ResponseEntity<?> streamAsyncOrderStatus(@PathVariable String token) {
+        User user = authService.getCurrentUser();
+        SseEmitter emitter = asyncCheckoutService.subscribe(token, user.getId(), user.getRole().name().equals("ADMIN"));
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
     // Lấy đơn hàng theo ID
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
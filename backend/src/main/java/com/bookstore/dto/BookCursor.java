@@ -0,0 +1,114 @@
+package com.bookstore.dto;
+
+import com.bookstore.entity.Book;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+// Cursor cho keyset (seek) pagination: mã hóa trường sắp xếp, chiều, giá trị khóa và id của phần tử cuối trang
+public class BookCursor {
+
+    // Các trường hỗ trợ keyset (phải NOT NULL để so sánh seek đúng)
+    public static final List<String> SORT_FIELDS = List.of("createdAt", "price", "title", "id");
+
+    private static final String SEPARATOR = "|";
+
+    private final String sortBy;
+    private final boolean descending;
+    private final Long lastId;
+    private final Comparable<?> lastValue;
+
+    private BookCursor(String sortBy, boolean descending, Long lastId, Comparable<?> lastValue) {
+        this.sortBy = sortBy;
+        this.descending = descending;
+        this.lastId = lastId;
+        this.lastValue = lastValue;
+    }
+
+    // Cursor trang đầu tiên (chưa có vị trí)
+    public static BookCursor first(String sortBy, String sortDir) {
+        if (!SORT_FIELDS.contains(sortBy)) {
+            throw new IllegalArgumentException("Không hỗ trợ keyset pagination theo trường: " + sortBy);
+        }
+        return new BookCursor(sortBy, "desc".equalsIgnoreCase(sortDir), null, null);
+    }
+
+    // Cursor trỏ tới sau sách cuối cùng của trang hiện tại
+    public BookCursor after(Book book) {
+        return new BookCursor(sortBy, descending, book.getId(), sortValueOf(book));
+    }
+
+    public String encode() {
+        String raw = sortBy + SEPARATOR + (descending ? "desc" : "asc") + SEPARATOR + lastId + SEPARATOR + formatValue();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, 4);
+            BookCursor first = first(parts[0], parts[1]);
+            Long lastId = Long.valueOf(parts[2]);
+            return new BookCursor(first.sortBy, first.descending, lastId, parseValue(first.sortBy, parts[3], lastId));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor không hợp lệ: " + token);
+        }
+    }
+
+    public boolean hasPosition() {
+        return lastId != null;
+    }
+
+    private Comparable<?> sortValueOf(Book book) {
+        switch (sortBy) {
+            case "createdAt":
+                return book.getCreatedAt();
+            case "price":
+                return book.getPrice();
+            case "title":
+                return book.getTitle();
+            default:
+                return book.getId();
+        }
+    }
+
+    private String formatValue() {
+        if (lastValue instanceof BigDecimal) {
+            return ((BigDecimal) lastValue).toPlainString();
+        }
+        return String.valueOf(lastValue);
+    }
+
+    private static Comparable<?> parseValue(String sortBy, String value, Long lastId) {
+        switch (sortBy) {
+            case "createdAt":
+                return LocalDateTime.parse(value);
+            case "price":
+                return new BigDecimal(value);
+            case "title":
+                return value;
+            default:
+                return lastId;
+        }
+    }
+
+    // Getters
+    public String getSortBy() {
+        return sortBy;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    public Comparable<?> getLastValue() {
+        return lastValue;
+    }
+}
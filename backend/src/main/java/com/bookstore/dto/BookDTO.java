@@ -38,6 +38,7 @@ public class BookDTO {
     private Long categoryId;
     private Long authorId;
     private String author; // Support author name for easier frontend integration
+    private String categoryName; // Tên thể loại, dùng khi import không có categoryId
     
     // Constructors
     public BookDTO() {}
@@ -137,4 +138,12 @@ public class BookDTO {
     public void setAuthor(String author) {
         this.author = author;
     }
-} 
\ No newline at end of file
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+    
+    public void setCategoryName(String categoryName) {
+        this.categoryName = categoryName;
+    }
+}
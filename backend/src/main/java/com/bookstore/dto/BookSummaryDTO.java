@@ -85,8 +85,48 @@ public class BookSummaryDTO {
         }
     }
 
+    // Constructor cho projection query: chỉ các cột của trang danh sách (không description, images nạp riêng theo lô)
+    public BookSummaryDTO(Long id, String title, String isbn, BigDecimal price, Integer stockQuantity,
+                          String imageUrl, Integer pages, String language,
+                          LocalDateTime createdAt, LocalDateTime updatedAt,
+                          Long categoryId, String categoryName, Long authorId, String authorName) {
+        this.id = id;
+        this.title = title;
+        this.isbn = isbn;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+        this.imageUrl = imageUrl;
+        this.pages = pages;
+        this.language = language;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.authorId = authorId;
+        this.authorName = authorName;
+        this.inStock = stockQuantity != null && stockQuantity > 0;
+        this.images = new ArrayList<>();
+    }
+
     // Static factory method cho Book với JOIN FETCH (đã load category và author)
     public static BookSummaryDTO fromBookWithDetails(Book book) {
+        // Safely handle images collection (even with FETCH)
+        List<String> images;
+        try {
+            images = book.getImages() != null ? new ArrayList<>(book.getImages()) : null;
+        } catch (Exception e) {
+            images = null;
+        }
+        return fromBook(book, images);
+    }
+
+    // Như fromBookWithDetails nhưng images đã được nạp sẵn theo lô, không chạm vào collection lazy của entity
+    public static BookSummaryDTO fromBookWithDetails(Book book, List<String> images) {
+        return fromBook(book, images);
+    }
+
+    // Copy các field của sách, images null thì dùng ảnh bìa
+    private static BookSummaryDTO fromBook(Book book, List<String> images) {
         BookSummaryDTO dto = new BookSummaryDTO();
         
         dto.setId(book.getId());
@@ -102,18 +142,8 @@ public class BookSummaryDTO {
         dto.setUpdatedAt(book.getUpdatedAt());
         dto.setInStock(book.isInStock());
         
-        // Safely handle images collection (even with FETCH)
-        try {
-            if (book.getImages() != null && !book.getImages().isEmpty()) {
-                dto.setImages(new ArrayList<>(book.getImages()));
-            } else {
-                dto.setImages(new ArrayList<>());
-            }
-        } catch (Exception e) {
-            dto.setImages(new ArrayList<>());
-        }
-        if ((dto.getImages() == null || dto.getImages().isEmpty()) && book.getImageUrl() != null) {
-            if (dto.getImages() == null) dto.setImages(new ArrayList<>());
+        dto.setImages(images != null ? new ArrayList<>(images) : new ArrayList<>());
+        if (dto.getImages().isEmpty() && book.getImageUrl() != null) {
             dto.getImages().add(book.getImageUrl());
         }
         
@@ -7,6 +7,7 @@ public class CategoryDTO {
     private String name;
     private String description;
     private int bookCount;
+    private int inStockBookCount;
 
     // Constructors
     public CategoryDTO() {}
@@ -26,6 +27,15 @@ public class CategoryDTO {
         this.bookCount = bookCount;
     }
 
+    // Constructor cho query GROUP BY (COUNT/SUM trả về Long, SUM là null khi thể loại không có sách)
+    public CategoryDTO(Long id, String name, String description, Long bookCount, Long inStockBookCount) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.bookCount = bookCount != null ? bookCount.intValue() : 0;
+        this.inStockBookCount = inStockBookCount != null ? inStockBookCount.intValue() : 0;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -58,4 +68,12 @@ public class CategoryDTO {
     public void setBookCount(int bookCount) {
         this.bookCount = bookCount;
     }
-} 
\ No newline at end of file
+
+    public int getInStockBookCount() {
+        return inStockBookCount;
+    }
+
+    public void setInStockBookCount(int inStockBookCount) {
+        this.inStockBookCount = inStockBookCount;
+    }
+}
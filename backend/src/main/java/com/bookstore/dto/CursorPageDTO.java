@@ -0,0 +1,70 @@
+package com.bookstore.dto;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Kết quả keyset pagination: nội dung trang, cursor trang kế và tổng số (chỉ khi được yêu cầu)
+public class CursorPageDTO<T> {
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+    private Long totalElements;
+
+    // Constructors
+    public CursorPageDTO() {}
+
+    public CursorPageDTO(List<T> content, String nextCursor, boolean hasNext, Long totalElements) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+        this.totalElements = totalElements;
+    }
+
+    // Response map cùng format với các endpoint phân trang hiện có
+    public Map<String, Object> toResponse() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("content", content);
+        response.put("size", content.size());
+        response.put("nextCursor", nextCursor);
+        response.put("hasNext", hasNext);
+        response.put("last", !hasNext);
+        if (totalElements != null) {
+            response.put("totalElements", totalElements);
+        }
+        return response;
+    }
+
+    // Getters and Setters
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    public void setTotalElements(Long totalElements) {
+        this.totalElements = totalElements;
+    }
+}
@@ -7,6 +7,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -17,6 +18,11 @@ import java.util.List;
 
 @Entity
 @Table(name = "books")
+@NamedEntityGraph(name = "Book.withDetails", attributeNodes = {
+    @NamedAttributeNode("category"),
+    @NamedAttributeNode("author"),
+    @NamedAttributeNode("images")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Book {
     @Id
@@ -45,7 +51,10 @@ public class Book {
     
     private String imageUrl;
 
-    @ElementCollection(fetch = FetchType.EAGER)
+    // LAZY + batch: images của nhiều sách trong cùng session được nạp chung một SELECT IN,
+    // cần images ngoài transaction thì dùng entity graph "Book.withDetails"
+    @ElementCollection(fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
     @JsonIgnore // Hoàn toàn bỏ qua khi serialize JSON
     private List<String> images = new ArrayList<>();
     
@@ -25,7 +25,8 @@ public class Category {
     @Column(length = 500)
     private String description;
     
-    @OneToMany(mappedBy = "category", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    // LAZY: danh sách thể loại lấy số sách qua CategoryRepository.findAllSummariesOrderByNameAsc
+    @OneToMany(mappedBy = "category", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonIgnore // Hoàn toàn bỏ qua khi serialize JSON
     private List<Book> books = new ArrayList<>();
     
@@ -0,0 +1,61 @@
+package com.bookstore.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Một thay đổi tồn kho chưa ghi vào books (chế độ tồn kho in-memory): ghi cùng transaction với đơn hàng,
+// được InMemoryInventory cộng dồn vào books rồi xóa. Chỉ đọc/ghi bằng JDBC, entity dùng để sinh bảng
+@Entity
+@Table(name = "inventory_journal", indexes = @Index(name = "idx_inventory_journal_book", columnList = "book_id"))
+public class InventoryJournalEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    // Âm khi giữ hàng, dương khi hoàn kho
+    @Column(nullable = false)
+    private Integer delta;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public InventoryJournalEntry() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public Integer getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
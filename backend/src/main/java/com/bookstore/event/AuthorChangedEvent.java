@@ -0,0 +1,36 @@
+package com.bookstore.event;
+
+// Sự kiện phát ra khi tác giả được tạo/cập nhật/xóa, dùng để đồng bộ các index in-memory
+public class AuthorChangedEvent {
+
+    private final Long authorId;
+    private final String name; // null nếu đã xóa
+    private final boolean deleted;
+
+    public AuthorChangedEvent(Long authorId, String name, boolean deleted) {
+        this.authorId = authorId;
+        this.name = name;
+        this.deleted = deleted;
+    }
+
+    public static AuthorChangedEvent saved(Long authorId, String name) {
+        return new AuthorChangedEvent(authorId, name, false);
+    }
+
+    public static AuthorChangedEvent deleted(Long authorId) {
+        return new AuthorChangedEvent(authorId, null, true);
+    }
+
+    // Getters
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
@@ -0,0 +1,88 @@
+package com.bookstore.event;
+
+import com.bookstore.dto.BookSummaryDTO;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sự kiện phát ra khi sách được tạo/cập nhật/xóa, dùng để đồng bộ các index in-memory.
+// version tăng dần theo thời điểm tạo snapshot; nơi phát phải tạo event sau khi đã ghi dòng sách (đang giữ khóa dòng)
+// để hai transaction cùng sửa một sách có version đúng thứ tự commit
+public class BookChangedEvent {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long bookId;
+    private final BookSummaryDTO book; // Snapshot sau khi ghi, null nếu DELETED
+    private final boolean stockOnly; // Chỉ tồn kho thay đổi do giữ/hoàn kho theo đơn hàng
+    private final boolean availabilityChanged; // Với stockOnly: sách vừa chuyển còn hàng <-> hết hàng
+    private final long version;
+
+    public BookChangedEvent(Type type, Long bookId, BookSummaryDTO book) {
+        this(type, bookId, book, false);
+    }
+
+    public BookChangedEvent(Type type, Long bookId, BookSummaryDTO book, boolean stockOnly) {
+        this(type, bookId, book, stockOnly, false);
+    }
+
+    public BookChangedEvent(Type type, Long bookId, BookSummaryDTO book, boolean stockOnly, boolean availabilityChanged) {
+        this.type = type;
+        this.bookId = bookId;
+        this.book = book;
+        this.stockOnly = stockOnly;
+        this.availabilityChanged = availabilityChanged;
+        this.version = SEQUENCE.incrementAndGet();
+    }
+
+    public static BookChangedEvent created(BookSummaryDTO book) {
+        return new BookChangedEvent(Type.CREATED, book.getId(), book);
+    }
+
+    public static BookChangedEvent updated(BookSummaryDTO book) {
+        return new BookChangedEvent(Type.UPDATED, book.getId(), book);
+    }
+
+    public static BookChangedEvent stockChanged(BookSummaryDTO book, boolean availabilityChanged) {
+        return new BookChangedEvent(Type.UPDATED, book.getId(), book, true, availabilityChanged);
+    }
+
+    public static BookChangedEvent deleted(Long bookId) {
+        return new BookChangedEvent(Type.DELETED, bookId, null);
+    }
+
+    // Getters
+    public Type getType() {
+        return type;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public BookSummaryDTO getBook() {
+        return book;
+    }
+
+    public boolean isDeleted() {
+        return type == Type.DELETED;
+    }
+
+    public boolean isStockOnly() {
+        return stockOnly;
+    }
+
+    public boolean isAvailabilityChanged() {
+        return availabilityChanged;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,20 @@
+package com.bookstore.event;
+
+import com.bookstore.dto.BookSummaryDTO;
+
+import java.util.List;
+
+// Sự kiện phát ra sau khi CatalogIndexer nạp lại toàn bộ catalog, cho các thành phần cần snapshot đầy đủ
+// (không phải index) như version từng sách
+public class CatalogRebuiltEvent {
+
+    private final List<BookSummaryDTO> books;
+
+    public CatalogRebuiltEvent(List<BookSummaryDTO> books) {
+        this.books = books;
+    }
+
+    public List<BookSummaryDTO> getBooks() {
+        return books;
+    }
+}
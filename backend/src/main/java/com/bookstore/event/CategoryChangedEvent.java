@@ -0,0 +1,36 @@
+package com.bookstore.event;
+
+// Sự kiện phát ra khi thể loại được tạo/cập nhật/xóa, dùng để đồng bộ các index in-memory
+public class CategoryChangedEvent {
+
+    private final Long categoryId;
+    private final String name; // null nếu đã xóa
+    private final boolean deleted;
+
+    public CategoryChangedEvent(Long categoryId, String name, boolean deleted) {
+        this.categoryId = categoryId;
+        this.name = name;
+        this.deleted = deleted;
+    }
+
+    public static CategoryChangedEvent saved(Long categoryId, String name) {
+        return new CategoryChangedEvent(categoryId, name, false);
+    }
+
+    public static CategoryChangedEvent deleted(Long categoryId) {
+        return new CategoryChangedEvent(categoryId, null, true);
+    }
+
+    // Getters
+    public Long getCategoryId() {
+        return categoryId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
@@ -0,0 +1,62 @@
+package com.bookstore.event;
+
+import com.bookstore.entity.Order;
+import com.bookstore.entity.OrderItem;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Sự kiện phát ra khi đơn hàng được đặt hoặc bị hủy, dùng để cập nhật thống kê bán hàng in-memory
+public class OrderSalesEvent {
+
+    private final Long orderId;
+    private final LocalDateTime orderDate;
+    private final Map<Long, Integer> quantitiesByBookId; // bookId -> số lượng trong đơn
+    private final boolean cancelled;
+
+    public OrderSalesEvent(Long orderId, LocalDateTime orderDate, Map<Long, Integer> quantitiesByBookId, boolean cancelled) {
+        this.orderId = orderId;
+        this.orderDate = orderDate;
+        this.quantitiesByBookId = quantitiesByBookId;
+        this.cancelled = cancelled;
+    }
+
+    public static OrderSalesEvent placed(Order order) {
+        return new OrderSalesEvent(order.getId(), orderDateOf(order), quantitiesOf(order), false);
+    }
+
+    public static OrderSalesEvent cancelled(Order order) {
+        return new OrderSalesEvent(order.getId(), orderDateOf(order), quantitiesOf(order), true);
+    }
+
+    private static LocalDateTime orderDateOf(Order order) {
+        return order.getOrderDate() != null ? order.getOrderDate() : LocalDateTime.now();
+    }
+
+    private static Map<Long, Integer> quantitiesOf(Order order) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItem item : order.getOrderItems()) {
+            quantities.merge(item.getBook().getId(), item.getQuantity(), Integer::sum);
+        }
+        return Collections.unmodifiableMap(quantities);
+    }
+
+    // Getters
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public LocalDateTime getOrderDate() {
+        return orderDate;
+    }
+
+    public Map<Long, Integer> getQuantitiesByBookId() {
+        return quantitiesByBookId;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,302 @@
+package com.bookstore.ranking;
+
+import com.bookstore.entity.OrderStatus;
+import com.bookstore.event.OrderSalesEvent;
+import com.bookstore.repository.OrderItemRepository;
+import com.bookstore.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// "Khách hàng cũng mua": ma trận đồng mua thưa giữa các sách (số đơn chứa cả hai sách), nạp từ lịch sử đơn hàng
+// và cập nhật tăng dần khi đơn được đặt/hủy. Mỗi sách giữ sẵn top-K sách liên quan, tính lại khi hàng thay đổi
+// hoặc khi số đơn của một sách trong hàng thay đổi (điểm cosine phụ thuộc cả hai phía).
+@Component
+public class CoPurchaseMatrix {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoPurchaseMatrix.class);
+
+    // Số dòng order item đọc mỗi lần khi nạp lại
+    private static final int LOAD_BATCH_SIZE = 5000;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    // Số sách liên quan giữ sẵn cho mỗi sách
+    @Value("${app.recommend.top-k:20}")
+    private int topK;
+
+    // Đơn có quá nhiều đầu sách (mua sỉ) không phản ánh sở thích và sinh O(n^2) cặp -> bỏ qua
+    @Value("${app.recommend.max-items-per-order:50}")
+    private int maxItemsPerOrder;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Long, Row> rows = new HashMap<>();
+
+    private final Queue<OrderSalesEvent> pendingEvents = new ConcurrentLinkedQueue<>();
+    private volatile boolean rebuilding = false;
+
+    // Đơn có id <= mốc này đã nằm trong dữ liệu nạp lần gần nhất: sự kiện đặt hàng của chúng bị bỏ để không cộng hai lần
+    private volatile long loadedMaxOrderId = 0;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    // Nạp lại từ DB theo từng lô order item (keyset theo order id), bỏ qua đơn đã hủy. Chỉ nạp tới id đơn lớn nhất
+    // đọc được lúc bắt đầu, sự kiện đặt hàng đến trong lúc nạp mà đã nằm trong dữ liệu nạp thì bị bỏ (xem SalesRanking)
+    public void rebuild() {
+        rebuilding = true;
+        try {
+            long start = System.currentTimeMillis();
+            long maxOrderId = orderRepository.findMaxId();
+            Map<Long, Row> fresh = new HashMap<>();
+            long orders = 0;
+            Long afterOrderId = 0L;
+            while (true) {
+                List<Object[]> batch = orderItemRepository.findOrderBooksAfter(
+                    afterOrderId, maxOrderId, OrderStatus.CANCELLED, PageRequest.of(0, LOAD_BATCH_SIZE));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                boolean lastBatch = batch.size() < LOAD_BATCH_SIZE;
+                Long lastOrderId = (Long) batch.get(batch.size() - 1)[0];
+                Long firstOrderId = (Long) batch.get(0)[0];
+
+                List<Long> books = new ArrayList<>();
+                Long currentOrderId = null;
+                for (Object[] row : batch) {
+                    Long orderId = (Long) row[0];
+                    // Đơn cuối của lô có thể bị cắt ngang, để lô sau đọc lại trọn vẹn
+                    // (trừ khi cả lô chỉ có một đơn - đơn đó chắc chắn vượt maxItemsPerOrder)
+                    if (!lastBatch && orderId.equals(lastOrderId) && !lastOrderId.equals(firstOrderId)) {
+                        break;
+                    }
+                    if (!orderId.equals(currentOrderId)) {
+                        orders += apply(fresh, books, 1) ? 1 : 0;
+                        books.clear();
+                        currentOrderId = orderId;
+                    }
+                    books.add((Long) row[1]);
+                }
+                orders += apply(fresh, books, 1) ? 1 : 0;
+                if (lastBatch) {
+                    break;
+                }
+                afterOrderId = currentOrderId;
+            }
+
+            lock.writeLock().lock();
+            try {
+                rows = fresh;
+                loadedMaxOrderId = maxOrderId;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Loaded co-purchase matrix from {} orders ({} books) in {} ms",
+                orders, fresh.size(), System.currentTimeMillis() - start);
+        } finally {
+            rebuilding = false;
+            applyPendingEvents();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderSales(OrderSalesEvent event) {
+        pendingEvents.add(event);
+        if (!rebuilding) {
+            applyPendingEvents();
+        }
+    }
+
+    // Id các sách hay được mua cùng bookId, liên quan nhất trước (tối đa app.recommend.top-k)
+    public List<Long> related(Long bookId, int limit) {
+        lock.readLock().lock();
+        try {
+            Row row = rows.get(bookId);
+            if (row == null) {
+                return new ArrayList<>();
+            }
+            long[] top = row.top;
+            if (top == null) {
+                top = computeTop(row);
+                // Nhiều thread có thể cùng tính, kết quả như nhau nên ghi đè không sao
+                row.top = top;
+            }
+            List<Long> result = new ArrayList<>(Math.min(limit, top.length));
+            for (int i = 0; i < top.length && result.size() < limit; i++) {
+                result.add(top[i]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void applyPendingEvents() {
+        lock.writeLock().lock();
+        try {
+            OrderSalesEvent event;
+            while ((event = pendingEvents.poll()) != null) {
+                if (!event.isCancelled() && event.getOrderId() != null && event.getOrderId() <= loadedMaxOrderId) {
+                    continue;
+                }
+                List<Long> books = new ArrayList<>(event.getQuantitiesByBookId().keySet());
+                if (apply(rows, books, event.isCancelled() ? -1 : 1)) {
+                    invalidatePartners(books);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Cộng/trừ một đơn vào ma trận: mỗi cặp sách khác nhau trong đơn +-1 (số lượng mỗi sách không tính)
+    private boolean apply(Map<Long, Row> target, List<Long> books, int delta) {
+        if (books.size() < 2 || books.size() > maxItemsPerOrder) {
+            return false;
+        }
+        for (Long book : books) {
+            Row row = target.computeIfAbsent(book, k -> new Row());
+            row.orders += delta;
+            for (Long other : books) {
+                if (!other.equals(book)) {
+                    row.counts.add(other, delta);
+                }
+            }
+            row.top = null;
+        }
+        return true;
+    }
+
+    // orders của các sách trong đơn đã đổi nên điểm của chúng trong top-K của mọi sách mua cùng cũng đổi -
+    // bỏ top của các hàng đó để tính lại khi cần. Gọi trong write lock
+    private void invalidatePartners(List<Long> books) {
+        for (Long book : books) {
+            LongIntMap counts = rows.get(book).counts;
+            for (long other : counts.keys) {
+                if (other == LongIntMap.EMPTY) {
+                    continue;
+                }
+                Row partner = rows.get(other);
+                if (partner != null) {
+                    partner.top = null;
+                }
+            }
+        }
+    }
+
+    // Xếp hạng theo cosine: co(a, b) / sqrt(orders(a) * orders(b)) - tránh để sách bán chạy chiếm hết mọi danh sách.
+    // Gọi trong read lock
+    private long[] computeTop(Row row) {
+        PriorityQueue<long[]> heap = new PriorityQueue<>(topK + 1, (a, b) -> compare(row, a, b));
+        LongIntMap counts = row.counts;
+        for (int i = 0; i < counts.keys.length; i++) {
+            long other = counts.keys[i];
+            if (other == LongIntMap.EMPTY || counts.values[i] <= 0) {
+                continue;
+            }
+            heap.offer(new long[]{other, counts.values[i]});
+            if (heap.size() > topK) {
+                heap.poll();
+            }
+        }
+        long[][] ranked = heap.toArray(new long[0][]);
+        Arrays.sort(ranked, (a, b) -> compare(row, b, a));
+        long[] ids = new long[ranked.length];
+        for (int i = 0; i < ranked.length; i++) {
+            ids[i] = ranked[i][0];
+        }
+        return ids;
+    }
+
+    // Tăng dần theo độ liên quan (dùng cho min-heap), cùng điểm thì id nhỏ hơn được xếp trên
+    private int compare(Row row, long[] a, long[] b) {
+        double scoreA = a[1] / Math.sqrt(Math.max(1, row.orders) * (double) Math.max(1, ordersOf(a[0])));
+        double scoreB = b[1] / Math.sqrt(Math.max(1, row.orders) * (double) Math.max(1, ordersOf(b[0])));
+        if (scoreA != scoreB) {
+            return Double.compare(scoreA, scoreB);
+        }
+        return Long.compare(b[0], a[0]);
+    }
+
+    private int ordersOf(long bookId) {
+        Row row = rows.get(bookId);
+        return row != null ? row.orders : 0;
+    }
+
+    // Một hàng của ma trận: số đơn chứa sách và số lần mua cùng từng sách khác
+    private static class Row {
+        private final LongIntMap counts = new LongIntMap();
+        private int orders;
+        // Top-K đã tính, null khi hàng vừa thay đổi
+        private volatile long[] top;
+    }
+
+    // Map long -> int địa chỉ mở (linear probing), không boxing; key 0 đánh dấu ô trống (id sách bắt đầu từ 1).
+    // Cặp về 0 sau khi hủy đơn được giữ lại với giá trị 0 và bị bỏ qua khi xếp hạng
+    private static class LongIntMap {
+        private static final long EMPTY = 0L;
+
+        private long[] keys = new long[8];
+        private int[] values = new int[8];
+        private int size;
+
+        void add(long key, int delta) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize();
+            }
+            int slot = slot(key, keys.length);
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] += delta;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(oldKeys[i], keys.length);
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & (keys.length - 1);
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(long key, int capacity) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.bookstore.repository;
 
 import com.bookstore.entity.Author;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -9,6 +10,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -57,4 +59,25 @@ public interface AuthorRepository extends JpaRepository<Author, Long> {
     // Count authors with books
     @Query("SELECT COUNT(DISTINCT a) FROM Author a JOIN a.books b")
     long countAuthorsWithBooks();
-}
\ No newline at end of file
+    
+    // Chỉ lấy id và tên - dùng để build index in-memory
+    @Query("SELECT a.id, a.name FROM Author a")
+    List<Object[]> findAllIdAndName();
+
+    // Lấy id và tên theo danh sách tên (set-based, dùng khi import)
+    @Query("SELECT a.id, a.name FROM Author a WHERE a.name IN :names")
+    List<Object[]> findIdAndNameByNameIn(@Param("names") Collection<String> names);
+    
+    // Lấy id và tên theo danh sách id (set-based, dùng khi import)
+    @Query("SELECT a.id, a.name FROM Author a WHERE a.id IN :ids")
+    List<Object[]> findIdAndNameByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Các tác giả trong danh sách đang có sách (thay cho countBooksByAuthorId từng tác giả)
+    @Query("SELECT DISTINCT b.author.id FROM Book b WHERE b.author.id IN :ids")
+    List<Long> findIdsWithBooks(@Param("ids") Collection<Long> ids);
+
+    // Xóa nhiều tác giả bằng một câu lệnh (chỉ gọi với tác giả không có sách)
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Author a WHERE a.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
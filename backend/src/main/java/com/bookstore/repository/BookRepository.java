@@ -1,19 +1,27 @@
 package com.bookstore.repository;
 
 import com.bookstore.entity.Book;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book>, BookRepositoryCustom {
     
     // Tìm theo ISBN
     Optional<Book> findByIsbn(String isbn);
@@ -21,6 +29,9 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     // Tìm theo category ID
     List<Book> findByCategoryId(Long categoryId);
     
+    // Đếm số sách của một thể loại
+    long countByCategoryId(Long categoryId);
+    
     // Tìm theo author ID  
     List<Book> findByAuthorId(Long authorId);
     
@@ -45,6 +56,24 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     // Kiểm tra tồn tại theo ISBN
     boolean existsByIsbn(String isbn);
     
+    // Các ISBN trong danh sách đã tồn tại (kiểm tra trùng theo lô khi import)
+    @Query("SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    // Các ID trong danh sách còn tồn tại (thao tác hàng loạt)
+    @Query("SELECT b.id FROM Book b WHERE b.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Xóa ảnh của nhiều sách - JPQL không xóa được bảng @ElementCollection nên dùng native query
+    @Modifying
+    @Query(value = "DELETE FROM book_images WHERE book_id IN (:ids)", nativeQuery = true)
+    int deleteImagesByBookIdIn(@Param("ids") Collection<Long> ids);
+
+    // Xóa nhiều sách bằng một câu lệnh (ảnh phải được xóa trước)
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Book b WHERE b.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+    
     // Additional methods for AdminBookController with pagination
     
     // Tìm theo title với pagination
@@ -106,4 +135,47 @@ public interface BookRepository extends JpaRepository<Book, Long> {
            "LEFT JOIN FETCH b.author " +
            "WHERE b.id = :id")
     Optional<Book> findByIdWithCategoryAndAuthor(@Param("id") Long id);
-}
\ No newline at end of file
+
+    // Lấy nhiều sách theo danh sách ID với JOIN FETCH (thứ tự không đảm bảo)
+    @Query("SELECT b FROM Book b " +
+           "LEFT JOIN FETCH b.category " +
+           "LEFT JOIN FETCH b.author " +
+           "WHERE b.id IN :ids")
+    List<Book> findAllByIdInWithCategoryAndAuthor(@Param("ids") Collection<Long> ids);
+
+    // Đọc catalog theo lô (keyset trên id) với JOIN FETCH - dùng để build index in-memory
+    @Query("SELECT b FROM Book b " +
+           "LEFT JOIN FETCH b.category " +
+           "LEFT JOIN FETCH b.author " +
+           "WHERE b.id > :lastId " +
+           "ORDER BY b.id ASC")
+    List<Book> findBatchAfterIdWithCategoryAndAuthor(@Param("lastId") Long lastId, Pageable pageable);
+
+    // ===== Entity graph "Book.withDetails": category, author và images trong một SELECT =====
+    // Không dùng với Pageable (fetch collection làm Hibernate phân trang trong bộ nhớ)
+
+    // Tìm theo ID kèm category, author, images
+    @EntityGraph("Book.withDetails")
+    Optional<Book> findWithDetailsById(Long id);
+
+    // Lấy nhiều sách theo danh sách ID kèm category, author, images (thứ tự không đảm bảo)
+    @EntityGraph("Book.withDetails")
+    List<Book> findAllWithDetailsByIdIn(Collection<Long> ids);
+
+    // Ảnh của nhiều sách trong một query IN: mỗi dòng là [bookId, imageUrl]
+    @Query("SELECT b.id, i FROM Book b JOIN b.images i WHERE b.id IN :ids")
+    List<Object[]> findImagesByBookIdIn(@Param("ids") Collection<Long> ids);
+
+    // Export catalog: đọc tuần tự bằng cursor forward-only, chỉ các cột cần xuất, không hydrate entity.
+    // Fetch size Integer.MIN_VALUE bật chế độ streaming từng dòng của MySQL Connector/J. Phải đọc trong transaction.
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.fetchSize", value = "-2147483648"),
+        @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT b.id, b.isbn, b.title, b.description, b.price, b.stockQuantity, b.imageUrl, b.pages, b.language, " +
+           "c.id, c.name, a.id, a.name, b.createdAt, b.updatedAt " +
+           "FROM Book b LEFT JOIN b.category c LEFT JOIN b.author a " +
+           "WHERE (:since IS NULL OR b.updatedAt >= :since) " +
+           "ORDER BY b.id ASC")
+    Stream<Object[]> streamForExport(@Param("since") LocalDateTime since);
+}
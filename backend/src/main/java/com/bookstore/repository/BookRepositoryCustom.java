@@ -0,0 +1,23 @@
+package com.bookstore.repository;
+
+import com.bookstore.dto.BookCursor;
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+// Các truy vấn không biểu diễn được bằng derived query / @Query tĩnh
+public interface BookRepositoryCustom {
+
+    // Keyset pagination: lấy tối đa limit sách nằm sau vị trí cursor (JOIN FETCH category, author, không OFFSET/COUNT)
+    List<Book> findAfterCursor(BookCursor cursor, Specification<Book> filter, int limit);
+
+    // Lọc kết hợp nhiều điều kiện trong một câu SELECT (JOIN FETCH category, author), COUNT chỉ khi không suy ra được tổng
+    Page<Book> findAllWithDetails(Specification<Book> filter, Pageable pageable);
+
+    // Projection cho trang danh sách: chỉ SELECT các cột cần hiển thị + tên category/author, images nạp bằng một query IN
+    Page<BookSummaryDTO> findSummaries(Specification<Book> filter, Pageable pageable);
+}
@@ -0,0 +1,194 @@
+package com.bookstore.repository;
+
+import com.bookstore.dto.BookCursor;
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.entity.Author;
+import com.bookstore.entity.Book;
+import com.bookstore.entity.Category;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Book> findAfterCursor(BookCursor cursor, Specification<Book> filter, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = cb.createQuery(Book.class);
+        Root<Book> root = query.from(Book.class);
+        root.fetch("category", JoinType.LEFT);
+        root.fetch("author", JoinType.LEFT);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+        if (cursor.hasPosition()) {
+            predicates.add(seekPredicate(cb, root, cursor));
+        }
+
+        Path<Comparable<Object>> key = root.get(cursor.getSortBy());
+        Path<Long> id = root.get("id");
+        if (cursor.isDescending()) {
+            query.orderBy(cb.desc(key), cb.desc(id));
+        } else {
+            query.orderBy(cb.asc(key), cb.asc(id));
+        }
+
+        query.select(root).where(predicates.toArray(new Predicate[0]));
+        return entityManager.createQuery(query)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    @Override
+    public Page<Book> findAllWithDetails(Specification<Book> filter, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = cb.createQuery(Book.class);
+        Root<Book> root = query.from(Book.class);
+        root.fetch("category", JoinType.LEFT);
+        root.fetch("author", JoinType.LEFT);
+
+        query.select(root);
+        Predicate predicate = filter != null ? filter.toPredicate(root, query, cb) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+
+        query.orderBy(orders(cb, root, pageable.getSort()));
+
+        List<Book> content = entityManager.createQuery(query)
+            .setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize())
+            .getResultList();
+        return new PageImpl<>(content, pageable, total(filter, pageable, content.size()));
+    }
+
+    @Override
+    public Page<BookSummaryDTO> findSummaries(Specification<Book> filter, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookSummaryDTO> query = cb.createQuery(BookSummaryDTO.class);
+        Root<Book> root = query.from(Book.class);
+        Join<Book, Category> category = root.join("category", JoinType.LEFT);
+        Join<Book, Author> author = root.join("author", JoinType.LEFT);
+
+        // Không hydrate entity: không persistence context snapshot, không proxy, không đọc cột description
+        query.select(cb.construct(BookSummaryDTO.class,
+            root.get("id"), root.get("title"), root.get("isbn"), root.get("price"), root.get("stockQuantity"),
+            root.get("imageUrl"), root.get("pages"), root.get("language"),
+            root.get("createdAt"), root.get("updatedAt"),
+            category.get("id"), category.get("name"), author.get("id"), author.get("name")));
+        Predicate predicate = filter != null ? filter.toPredicate(root, query, cb) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(orders(cb, root, pageable.getSort()));
+
+        List<BookSummaryDTO> content = entityManager.createQuery(query)
+            .setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize())
+            .getResultList();
+        fillImages(content);
+        return new PageImpl<>(content, pageable, total(filter, pageable, content.size()));
+    }
+
+    // Nạp images của cả trang bằng một query IN thay vì một SELECT cho mỗi sách
+    private void fillImages(List<BookSummaryDTO> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+        Map<Long, BookSummaryDTO> byId = new HashMap<>();
+        for (BookSummaryDTO book : books) {
+            byId.put(book.getId(), book);
+        }
+        List<Object[]> rows = entityManager
+            .createQuery("SELECT b.id, i FROM Book b JOIN b.images i WHERE b.id IN :ids", Object[].class)
+            .setParameter("ids", byId.keySet())
+            .getResultList();
+        for (Object[] row : rows) {
+            byId.get((Long) row[0]).getImages().add((String) row[1]);
+        }
+        // Giống fromBookWithDetails: không có images thì dùng ảnh bìa
+        for (BookSummaryDTO book : books) {
+            if (book.getImages().isEmpty() && book.getImageUrl() != null) {
+                book.getImages().add(book.getImageUrl());
+            }
+        }
+    }
+
+    // Luôn thêm id vào cuối để thứ tự ổn định giữa các trang
+    private List<jakarta.persistence.criteria.Order> orders(CriteriaBuilder cb, Root<Book> root, Sort sort) {
+        List<jakarta.persistence.criteria.Order> orders = new ArrayList<>();
+        boolean hasIdOrder = false;
+        for (Sort.Order order : sort) {
+            Path<?> path = root.get(order.getProperty());
+            orders.add(order.isAscending() ? cb.asc(path) : cb.desc(path));
+            hasIdOrder |= "id".equals(order.getProperty());
+        }
+        if (!hasIdOrder) {
+            orders.add(cb.desc(root.get("id")));
+        }
+        return orders;
+    }
+
+    // Trang đầu chưa đầy hoặc trang cuối không rỗng thì tổng đã biết, không cần COUNT
+    private long total(Specification<Book> filter, Pageable pageable, int contentSize) {
+        if (pageable.getOffset() == 0 && contentSize < pageable.getPageSize()) {
+            return contentSize;
+        }
+        if (contentSize > 0 && contentSize < pageable.getPageSize()) {
+            return pageable.getOffset() + contentSize;
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Book> root = query.from(Book.class);
+        query.select(cb.count(root));
+        Predicate predicate = filter != null ? filter.toPredicate(root, query, cb) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    // (key, id) đứng sau (lastValue, lastId) theo chiều sắp xếp - tương đương row-value comparison
+    @SuppressWarnings("unchecked")
+    private Predicate seekPredicate(CriteriaBuilder cb, Root<Book> root, BookCursor cursor) {
+        Path<Comparable<Object>> key = root.get(cursor.getSortBy());
+        Comparable<Object> lastValue = (Comparable<Object>) cursor.getLastValue();
+        Path<Long> id = root.get("id");
+
+        if ("id".equals(cursor.getSortBy())) {
+            return cursor.isDescending() ? cb.lessThan(id, cursor.getLastId()) : cb.greaterThan(id, cursor.getLastId());
+        }
+        if (cursor.isDescending()) {
+            return cb.or(
+                cb.lessThan(key, lastValue),
+                cb.and(cb.equal(key, lastValue), cb.lessThan(id, cursor.getLastId())));
+        }
+        return cb.or(
+            cb.greaterThan(key, lastValue),
+            cb.and(cb.equal(key, lastValue), cb.greaterThan(id, cursor.getLastId())));
+    }
+}
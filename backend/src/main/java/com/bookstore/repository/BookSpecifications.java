@@ -0,0 +1,75 @@
+package com.bookstore.repository;
+
+import com.bookstore.entity.Book;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+// Các điều kiện lọc sách dùng chung cho truy vấn động (Specification / Criteria)
+public final class BookSpecifications {
+
+    // Các trường được phép sắp xếp (tránh sort theo field tùy ý từ request)
+    public static final Set<String> SORTABLE_FIELDS = Set.of(
+        "id", "title", "price", "stockQuantity", "pages", "createdAt", "updatedAt");
+
+    private BookSpecifications() {
+    }
+
+    // Kết hợp tất cả filter của trang admin, điều kiện null sẽ bị bỏ qua
+    public static Specification<Book> matching(String title, String author, Long categoryId,
+                                               BigDecimal minPrice, BigDecimal maxPrice, Boolean inStock) {
+        return Specification.where(titleContains(title))
+            .and(authorNameContains(author))
+            .and(hasCategory(categoryId))
+            .and(priceBetween(minPrice, maxPrice))
+            .and(inStock(inStock));
+    }
+
+    public static Specification<Book> hasCategory(Long categoryId) {
+        return (root, query, cb) -> categoryId == null ? null : cb.equal(root.get("category").get("id"), categoryId);
+    }
+
+    public static Specification<Book> titleContains(String title) {
+        return (root, query, cb) -> title == null || title.trim().isEmpty()
+            ? null
+            : cb.like(cb.lower(root.get("title")), "%" + title.trim().toLowerCase() + "%");
+    }
+
+    public static Specification<Book> hasAuthor(Long authorId) {
+        return (root, query, cb) -> authorId == null ? null : cb.equal(root.get("author").get("id"), authorId);
+    }
+
+    // Từ khóa xuất hiện trong title hoặc description
+    public static Specification<Book> keywordContains(String keyword) {
+        return (root, query, cb) -> {
+            if (keyword == null || keyword.trim().isEmpty()) {
+                return null;
+            }
+            String pattern = "%" + keyword.trim().toLowerCase() + "%";
+            return cb.or(cb.like(cb.lower(root.get("title")), pattern), cb.like(cb.lower(root.get("description")), pattern));
+        };
+    }
+
+    public static Specification<Book> authorNameContains(String author) {
+        return (root, query, cb) -> author == null || author.trim().isEmpty()
+            ? null
+            : cb.like(cb.lower(root.get("author").get("name")), "%" + author.trim().toLowerCase() + "%");
+    }
+
+    public static Specification<Book> priceBetween(BigDecimal minPrice, BigDecimal maxPrice) {
+        return (root, query, cb) -> {
+            if (minPrice != null && maxPrice != null) {
+                return cb.between(root.get("price"), minPrice, maxPrice);
+            }
+            if (minPrice != null) {
+                return cb.greaterThanOrEqualTo(root.get("price"), minPrice);
+            }
+            return maxPrice != null ? cb.lessThanOrEqualTo(root.get("price"), maxPrice) : null;
+        };
+    }
+
+    public static Specification<Book> inStock(Boolean inStock) {
+        return (root, query, cb) -> inStock == null || !inStock ? null : cb.greaterThan(root.get("stockQuantity"), 0);
+    }
+}
@@ -1,7 +1,9 @@
 package com.bookstore.repository;
 
+import com.bookstore.dto.CategoryDTO;
 import com.bookstore.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -24,4 +26,16 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     
     // Tìm categories có ít nhất 1 book (sử dụng JPA method)
     List<Category> findByBooksIsNotEmpty();
-} 
\ No newline at end of file
+    
+    // Chỉ lấy id và tên (không load collection books) - dùng để build index in-memory
+    @Query("SELECT c.id, c.name FROM Category c")
+    List<Object[]> findAllIdAndName();
+
+    // Danh sách thể loại kèm tổng số sách và số sách còn hàng trong một query GROUP BY (không load Book)
+    @Query("SELECT new com.bookstore.dto.CategoryDTO(c.id, c.name, c.description, COUNT(b.id), " +
+           "SUM(CASE WHEN b.stockQuantity > 0 THEN 1L ELSE 0L END)) " +
+           "FROM Category c LEFT JOIN c.books b " +
+           "GROUP BY c.id, c.name, c.description " +
+           "ORDER BY c.name ASC")
+    List<CategoryDTO> findAllSummariesOrderByNameAsc();
+}
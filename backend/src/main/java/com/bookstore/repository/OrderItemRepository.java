@@ -1,11 +1,15 @@
 package com.bookstore.repository;
 
 import com.bookstore.entity.OrderItem;
+import com.bookstore.entity.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -31,4 +35,27 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     // Tổng số lượng sách đã bán theo book ID
     @Query("SELECT SUM(oi.quantity) FROM OrderItem oi WHERE oi.book.id = :bookId")
     Long getTotalQuantitySoldByBook(@Param("bookId") Long bookId);
-} 
\ No newline at end of file
+    
+    // Tổng số lượng đã bán theo từng sách của các đơn có id <= maxOrderId (bỏ qua đơn ở trạng thái status) - dùng khi nạp SalesRanking
+    @Query("SELECT oi.book.id, SUM(oi.quantity) FROM OrderItem oi " +
+           "WHERE oi.order.id <= :maxOrderId AND oi.order.status <> :status " +
+           "GROUP BY oi.book.id")
+    List<Object[]> sumQuantityByBookExcludingStatus(@Param("maxOrderId") Long maxOrderId, @Param("status") OrderStatus status);
+    
+    // Từng dòng bán hàng (bookId, orderDate, quantity) từ thời điểm since của các đơn có id <= maxOrderId - dùng khi nạp SalesRanking
+    @Query("SELECT oi.book.id, o.orderDate, oi.quantity FROM OrderItem oi JOIN oi.order o " +
+           "WHERE o.orderDate >= :since AND o.id <= :maxOrderId AND o.status <> :status")
+    List<Object[]> findSalesSinceExcludingStatus(@Param("since") LocalDateTime since, @Param("maxOrderId") Long maxOrderId,
+                                                 @Param("status") OrderStatus status);
+
+    // Cặp (orderId, bookId) theo thứ tự order id, keyset sau afterOrderId tới maxOrderId - dùng khi nạp CoPurchaseMatrix
+    @Query("SELECT oi.order.id, oi.book.id FROM OrderItem oi " +
+           "WHERE oi.order.id > :afterOrderId AND oi.order.id <= :maxOrderId AND oi.order.status <> :status " +
+           "ORDER BY oi.order.id, oi.book.id")
+    List<Object[]> findOrderBooksAfter(@Param("afterOrderId") Long afterOrderId, @Param("maxOrderId") Long maxOrderId,
+                                       @Param("status") OrderStatus status, Pageable pageable);
+
+    // Các sách trong danh sách đã xuất hiện trong đơn hàng (không xóa được vì còn khóa ngoại)
+    @Query("SELECT DISTINCT oi.book.id FROM OrderItem oi WHERE oi.book.id IN :bookIds")
+    List<Long> findOrderedBookIds(@Param("bookIds") Collection<Long> bookIds);
+}
@@ -5,6 +5,7 @@ import com.bookstore.entity.OrderStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -33,6 +34,10 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
            "ORDER BY o.orderDate DESC")
     List<Order> findByUserIdWithOrderItemsAndBooks(@Param("userId") Long userId);
     
+    // Id đơn hàng lớn nhất đã commit (0 nếu chưa có) - mốc của các lần nạp lại thống kê bán hàng in-memory
+    @Query("SELECT COALESCE(MAX(o.id), 0) FROM Order o")
+    Long findMaxId();
+    
     // Tìm đơn hàng theo trạng thái
     Page<Order> findByStatus(OrderStatus status, Pageable pageable);
     
@@ -87,4 +92,9 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
            "LEFT JOIN FETCH b.author " +
            "WHERE o.id = :id")
     Optional<Order> findByIdWithUserAndOrderItems(@Param("id") Long id);
-} 
\ No newline at end of file
+
+    // Đổi trạng thái có điều kiện: chỉ một trong các request hủy đồng thời thắng (1 dòng), tránh hoàn kho hai lần
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :status WHERE o.id = :id AND o.status <> :status")
+    int updateStatusIfChanged(@Param("id") Long id, @Param("status") OrderStatus status);
+}
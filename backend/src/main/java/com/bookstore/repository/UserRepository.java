@@ -5,10 +5,13 @@ import com.bookstore.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -55,4 +58,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Count orders by user ID để tránh lazy loading
     @Query("SELECT COUNT(o) FROM Order o WHERE o.user.id = :userId")
     long countOrdersByUserId(@Param("userId") Long userId);
+
+    // Các ID trong danh sách còn tồn tại (thao tác hàng loạt)
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Các user trong danh sách đã có đơn hàng (thay cho countOrdersByUserId từng user)
+    @Query("SELECT DISTINCT o.user.id FROM Order o WHERE o.user.id IN :ids")
+    List<Long> findIdsWithOrders(@Param("ids") Collection<Long> ids);
+
+    // Xóa nhiều user bằng một câu lệnh (chỉ gọi với user không có đơn hàng)
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM User u WHERE u.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Bật/tắt nhiều tài khoản bằng một câu lệnh
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.enabled = :enabled, u.updatedAt = :now WHERE u.id IN :ids")
+    int updateEnabledByIdIn(@Param("ids") Collection<Long> ids, @Param("enabled") boolean enabled,
+                            @Param("now") LocalDateTime now);
 }
\ No newline at end of file
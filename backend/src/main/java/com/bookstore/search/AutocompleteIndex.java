@@ -0,0 +1,421 @@
+package com.bookstore.search;
+
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.event.AuthorChangedEvent;
+import com.bookstore.event.CategoryChangedEvent;
+import com.bookstore.event.OrderSalesEvent;
+import com.bookstore.ranking.SalesRanking;
+import com.bookstore.repository.AuthorRepository;
+import com.bookstore.repository.CategoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Gợi ý tìm kiếm (typeahead): prefix trie trên tên sách, tác giả, thể loại (đã bỏ dấu), mỗi loại một trie riêng
+// để lọc theo loại không bị top-K của loại khác (sách nặng hơn) chiếm chỗ.
+// Mỗi node lưu sẵn top-K gợi ý theo độ phổ biến nên truy vấn chỉ là đi theo prefix.
+@Component
+public class AutocompleteIndex implements BookIndex {
+
+    public enum Type {
+        BOOK,
+        AUTHOR,
+        CATEGORY
+    }
+
+    // Số gợi ý tối đa lưu ở mỗi node
+    private static final int TOP_K = 10;
+    // Prefix dài hơn mức này không phân biệt thêm (giới hạn độ sâu trie)
+    private static final int MAX_KEY_LENGTH = 32;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private SalesRanking salesRanking;
+
+    // Độ phổ biến giảm dần, cùng độ phổ biến thì theo thứ tự chữ cái
+    private static final Comparator<Suggestion> BY_WEIGHT = (a, b) ->
+        a.weight != b.weight ? Long.compare(b.weight, a.weight) : a.folded.compareTo(b.folded);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Type, Node> roots = new EnumMap<>(Type.class);
+    private final Map<String, Suggestion> suggestions = new HashMap<>();
+
+    // Thông tin sách cần để cập nhật số sách của tác giả/thể loại khi sách thay đổi
+    private final Map<Long, BookSummaryDTO> books = new HashMap<>();
+    private final Map<Long, Integer> bookCountByAuthor = new HashMap<>();
+    private final Map<Long, Integer> bookCountByCategory = new HashMap<>();
+    private final Map<Long, Long> soldByBook = new HashMap<>();
+    private final Map<Long, String> authorNames = new HashMap<>();
+    private final Map<Long, String> categoryNames = new HashMap<>();
+
+    public AutocompleteIndex() {
+        for (Type type : Type.values()) {
+            roots.put(type, new Node());
+        }
+    }
+
+    @Override
+    public void rebuild(List<BookSummaryDTO> catalog) {
+        lock.writeLock().lock();
+        try {
+            for (Type type : Type.values()) {
+                roots.put(type, new Node());
+            }
+            suggestions.clear();
+            books.clear();
+            bookCountByAuthor.clear();
+            bookCountByCategory.clear();
+            soldByBook.clear();
+            authorNames.clear();
+            categoryNames.clear();
+
+            for (Object[] row : authorRepository.findAllIdAndName()) {
+                authorNames.put((Long) row[0], (String) row[1]);
+            }
+            for (Object[] row : categoryRepository.findAllIdAndName()) {
+                categoryNames.put((Long) row[0], (String) row[1]);
+            }
+            for (BookSummaryDTO book : catalog) {
+                books.put(book.getId(), book);
+                soldByBook.put(book.getId(), salesRanking.quantitySold(book.getId(), SalesRanking.Window.ALL));
+                countBook(book, 1);
+                putBook(book);
+            }
+            authorNames.forEach((id, name) -> put(Type.AUTHOR, id, name, 1 + bookCountByAuthor.getOrDefault(id, 0)));
+            categoryNames.forEach((id, name) -> put(Type.CATEGORY, id, name, 1 + bookCountByCategory.getOrDefault(id, 0)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(BookSummaryDTO book) {
+        lock.writeLock().lock();
+        try {
+            BookSummaryDTO previous = books.put(book.getId(), book);
+            if (previous != null) {
+                countBook(previous, -1);
+                refreshOwners(previous);
+            }
+            countBook(book, 1);
+            refreshOwners(book);
+            putBook(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            BookSummaryDTO previous = books.remove(bookId);
+            soldByBook.remove(bookId);
+            removeSuggestion(Type.BOOK, bookId);
+            if (previous != null) {
+                countBook(previous, -1);
+                refreshOwners(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAuthorChanged(AuthorChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.isDeleted()) {
+                authorNames.remove(event.getAuthorId());
+                removeSuggestion(Type.AUTHOR, event.getAuthorId());
+            } else {
+                authorNames.put(event.getAuthorId(), event.getName());
+                put(Type.AUTHOR, event.getAuthorId(), event.getName(), 1 + bookCountByAuthor.getOrDefault(event.getAuthorId(), 0));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.isDeleted()) {
+                categoryNames.remove(event.getCategoryId());
+                removeSuggestion(Type.CATEGORY, event.getCategoryId());
+            } else {
+                categoryNames.put(event.getCategoryId(), event.getName());
+                put(Type.CATEGORY, event.getCategoryId(), event.getName(), 1 + bookCountByCategory.getOrDefault(event.getCategoryId(), 0));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Độ phổ biến của sách = số lượng đã bán, cập nhật theo đơn hàng
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderSales(OrderSalesEvent event) {
+        lock.writeLock().lock();
+        try {
+            int sign = event.isCancelled() ? -1 : 1;
+            for (Map.Entry<Long, Integer> line : event.getQuantitiesByBookId().entrySet()) {
+                BookSummaryDTO book = books.get(line.getKey());
+                if (book != null) {
+                    soldByBook.merge(line.getKey(), (long) sign * line.getValue(), Long::sum);
+                    putBook(book);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Top gợi ý cho prefix (không phân biệt hoa thường, có dấu hay không dấu), type null = mọi loại (gộp top-K của từng trie)
+    public List<Suggestion> suggest(String prefix, Type type, int limit) {
+        String key = TextAnalyzer.fold(prefix);
+        List<Suggestion> result = new ArrayList<>();
+        if (key.isEmpty() || limit <= 0) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            for (Type candidateType : type != null ? EnumSet.of(type) : EnumSet.allOf(Type.class)) {
+                Node node = roots.get(candidateType);
+                for (int i = 0; i < Math.min(key.length(), MAX_KEY_LENGTH) && node != null; i++) {
+                    node = node.child(key.charAt(i));
+                }
+                if (node == null) {
+                    continue;
+                }
+                for (Suggestion suggestion : node.top) {
+                    // Prefix dài hơn độ sâu trie: kiểm tra lại trên chuỗi đầy đủ
+                    if (key.length() <= MAX_KEY_LENGTH || suggestion.matches(key)) {
+                        result.add(suggestion);
+                    }
+                }
+            }
+            result.sort(BY_WEIGHT);
+            return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Gọi trong write lock
+    private void putBook(BookSummaryDTO book) {
+        put(Type.BOOK, book.getId(), book.getTitle(), 1 + Math.max(0, soldByBook.getOrDefault(book.getId(), 0L)));
+    }
+
+    // Gọi trong write lock
+    private void countBook(BookSummaryDTO book, int delta) {
+        if (book.getAuthorId() != null) {
+            bookCountByAuthor.merge(book.getAuthorId(), delta, Integer::sum);
+        }
+        if (book.getCategoryId() != null) {
+            bookCountByCategory.merge(book.getCategoryId(), delta, Integer::sum);
+        }
+    }
+
+    // Cập nhật độ phổ biến của tác giả/thể loại của sách - gọi trong write lock
+    private void refreshOwners(BookSummaryDTO book) {
+        Long authorId = book.getAuthorId();
+        if (authorId != null && authorNames.containsKey(authorId)) {
+            put(Type.AUTHOR, authorId, authorNames.get(authorId), 1 + bookCountByAuthor.getOrDefault(authorId, 0));
+        }
+        Long categoryId = book.getCategoryId();
+        if (categoryId != null && categoryNames.containsKey(categoryId)) {
+            put(Type.CATEGORY, categoryId, categoryNames.get(categoryId), 1 + bookCountByCategory.getOrDefault(categoryId, 0));
+        }
+    }
+
+    // Thêm hoặc thay thế một gợi ý - gọi trong write lock
+    private void put(Type type, Long id, String text, long weight) {
+        Suggestion existing = suggestions.get(type + ":" + id);
+        if (existing != null && existing.weight == weight && existing.text.equals(text)) {
+            return;
+        }
+        removeSuggestion(type, id);
+        if (text == null || text.trim().isEmpty()) {
+            return;
+        }
+        Suggestion suggestion = new Suggestion(type, id, text, TextAnalyzer.fold(text), weight);
+        suggestions.put(type + ":" + id, suggestion);
+        for (String key : suggestion.keys()) {
+            List<Node> path = walk(type, key, true);
+            Node last = path.get(path.size() - 1);
+            last.terminals.add(suggestion);
+            for (Node node : path) {
+                node.offer(suggestion);
+            }
+        }
+    }
+
+    // Gọi trong write lock
+    private void removeSuggestion(Type type, Long id) {
+        Suggestion existing = suggestions.remove(type + ":" + id);
+        if (existing == null) {
+            return;
+        }
+        for (String key : existing.keys()) {
+            List<Node> path = walk(type, key, false);
+            if (path == null) {
+                continue;
+            }
+            path.get(path.size() - 1).terminals.remove(existing);
+            // Từ dưới lên: chỉ node nào đang giữ gợi ý bị xóa trong top mới cần tính lại
+            for (int i = path.size() - 1; i >= 0; i--) {
+                if (path.get(i).containsInTop(existing)) {
+                    path.get(i).recompute();
+                }
+            }
+        }
+    }
+
+    // Danh sách node từ root của trie theo loại và key (đã cắt MAX_KEY_LENGTH), create = false trả về null nếu chưa có
+    private List<Node> walk(Type type, String key, boolean create) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = roots.get(type);
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            Node next = node.child(key.charAt(i));
+            if (next == null) {
+                if (!create) {
+                    return null;
+                }
+                next = node.addChild(key.charAt(i));
+            }
+            node = next;
+            path.add(node);
+        }
+        return path;
+    }
+
+    // Node trie: con lưu trong mảng đã sắp xếp theo ký tự (gọn hơn HashMap)
+    private static class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Suggestion[] NO_SUGGESTIONS = new Suggestion[0];
+
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private Suggestion[] top = NO_SUGGESTIONS;
+        private final List<Suggestion> terminals = new ArrayList<>(0);
+
+        // Chèn gợi ý vào top-K nếu đủ tốt, O(K)
+        void offer(Suggestion suggestion) {
+            if (containsInTop(suggestion)) {
+                return;
+            }
+            int pos = top.length;
+            while (pos > 0 && BY_WEIGHT.compare(suggestion, top[pos - 1]) < 0) {
+                pos--;
+            }
+            if (pos >= TOP_K) {
+                return;
+            }
+            int newLength = Math.min(TOP_K, top.length + 1);
+            Suggestion[] newTop = new Suggestion[newLength];
+            System.arraycopy(top, 0, newTop, 0, pos);
+            newTop[pos] = suggestion;
+            System.arraycopy(top, pos, newTop, pos + 1, newLength - pos - 1);
+            top = newTop;
+        }
+
+        boolean containsInTop(Suggestion suggestion) {
+            for (Suggestion s : top) {
+                if (s == suggestion) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Tính lại top-K từ terminal của node và top-K của các node con
+        void recompute() {
+            Set<Suggestion> unique = new LinkedHashSet<>(terminals);
+            for (Node child : children) {
+                unique.addAll(Arrays.asList(child.top));
+            }
+            List<Suggestion> sorted = new ArrayList<>(unique);
+            sorted.sort(BY_WEIGHT);
+            top = sorted.subList(0, Math.min(TOP_K, sorted.size())).toArray(new Suggestion[0]);
+        }
+
+        Node child(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        Node addChild(char c) {
+            int idx = -(Arrays.binarySearch(keys, c) + 1);
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, idx);
+            System.arraycopy(children, 0, newChildren, 0, idx);
+            newKeys[idx] = c;
+            Node node = new Node();
+            newChildren[idx] = node;
+            System.arraycopy(keys, idx, newKeys, idx + 1, keys.length - idx);
+            System.arraycopy(children, idx, newChildren, idx + 1, children.length - idx);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+    }
+
+    // Một gợi ý: loại, id, text hiển thị và độ phổ biến
+    public static class Suggestion {
+        private final Type type;
+        private final Long id;
+        private final String text;
+        private final String folded;
+        private final long weight;
+
+        Suggestion(Type type, Long id, String text, String folded, long weight) {
+            this.type = type;
+            this.id = id;
+            this.text = text;
+            this.folded = folded;
+            this.weight = weight;
+        }
+
+        // Key trong trie: chuỗi đầy đủ và phần đuôi bắt đầu từ mỗi từ, để gõ từ giữa tên vẫn gợi ý được
+        List<String> keys() {
+            Set<String> keys = new LinkedHashSet<>();
+            for (int i = 0; i < folded.length(); i++) {
+                if (i == 0 || folded.charAt(i - 1) == ' ') {
+                    String key = folded.substring(i);
+                    keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+                }
+            }
+            return new ArrayList<>(keys);
+        }
+
+        boolean matches(String prefix) {
+            return folded.startsWith(prefix) || folded.contains(" " + prefix);
+        }
+
+        public Type getType() { return type; }
+        public Long getId() { return id; }
+        public String getText() { return text; }
+        public long getWeight() { return weight; }
+    }
+}
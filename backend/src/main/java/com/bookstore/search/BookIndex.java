@@ -0,0 +1,18 @@
+package com.bookstore.search;
+
+import com.bookstore.dto.BookSummaryDTO;
+
+import java.util.List;
+
+// Các read model in-memory của catalog, được CatalogIndexer nạp lúc khởi động và cập nhật khi sách thay đổi
+public interface BookIndex {
+
+    // Build lại toàn bộ index từ snapshot catalog
+    void rebuild(List<BookSummaryDTO> books);
+
+    // Thêm mới hoặc cập nhật một sách
+    void upsert(BookSummaryDTO book);
+
+    // Xóa sách khỏi index
+    void remove(Long bookId);
+}
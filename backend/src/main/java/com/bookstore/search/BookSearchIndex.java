@@ -0,0 +1,297 @@
+package com.bookstore.search;
+
+import com.bookstore.dto.BookSummaryDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index in-memory cho tìm kiếm sách (title, description, tác giả, thể loại), xếp hạng BM25
+@Component
+public class BookSearchIndex implements BookIndex {
+
+    // Trọng số từng field khi tính term frequency
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float AUTHOR_WEIGHT = 2.0f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    // Tham số BM25
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // Compact index khi số doc đã xóa (tombstone) vượt tỉ lệ này
+    private static final double COMPACT_RATIO = 0.25;
+    private static final int COMPACT_MIN_DOCS = 1000;
+
+    // Buffer điểm dùng lại theo thread, chỉ các doc đã chạm tới được cộng điểm và reset sau mỗi query
+    private static final ThreadLocal<Accumulator> ACCUMULATORS = ThreadLocal.withInitial(Accumulator::new);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Segment segment = new Segment();
+
+    @Override
+    public void rebuild(List<BookSummaryDTO> books) {
+        Segment fresh = new Segment();
+        for (BookSummaryDTO book : books) {
+            fresh.add(book);
+        }
+        lock.writeLock().lock();
+        try {
+            segment = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(BookSummaryDTO book) {
+        lock.writeLock().lock();
+        try {
+            segment.delete(book.getId());
+            segment.add(book);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            segment.delete(bookId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Tìm kiếm có xếp hạng và phân trang, categoryId có thể null
+    public Page<BookSummaryDTO> search(String query, Long categoryId, int page, int size) {
+        PageRequest pageable = PageRequest.of(page, size);
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.tokenize(query)));
+        if (terms.isEmpty()) {
+            return new PageImpl<>(new ArrayList<>(), pageable, 0);
+        }
+
+        lock.readLock().lock();
+        Accumulator acc = ACCUMULATORS.get();
+        try {
+            Segment seg = segment;
+            acc.ensureCapacity(seg.docs.size());
+            float[] scores = acc.scores;
+            float avgLength = seg.averageLength();
+
+            for (String term : terms) {
+                Postings postings = seg.postings.get(term);
+                if (postings == null) {
+                    continue;
+                }
+                float idf = (float) Math.log(1 + (seg.liveDocs - postings.size + 0.5) / (postings.size + 0.5));
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    if (seg.deleted.get(doc)) {
+                        continue;
+                    }
+                    float tf = postings.freqs[i];
+                    float norm = K1 * (1 - B + B * seg.lengths[doc] / avgLength);
+                    acc.add(doc, idf * tf * (K1 + 1) / (tf + norm));
+                }
+            }
+
+            // Ưu tiên sách khớp tất cả từ khóa, nếu không có thì lấy sách khớp ít nhất một từ
+            int required = terms.size();
+            if (!hasMatch(acc, required, seg, categoryId)) {
+                required = 1;
+            }
+
+            int limit = (int) Math.min((long) (page + 1) * size, Integer.MAX_VALUE);
+            PriorityQueue<Integer> top = new PriorityQueue<>(
+                (a, b) -> scores[a] != scores[b] ? Float.compare(scores[a], scores[b]) : Integer.compare(b, a));
+            long total = 0;
+            for (int i = 0; i < acc.touchedCount; i++) {
+                int doc = acc.touched[i];
+                if (acc.matchedTerms[doc] < required || !matchesCategory(seg.docs.get(doc), categoryId)) {
+                    continue;
+                }
+                total++;
+                top.offer(doc);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            Integer[] ranked = top.toArray(new Integer[0]);
+            Arrays.sort(ranked, (a, b) -> scores[a] != scores[b] ? Float.compare(scores[b], scores[a]) : Integer.compare(a, b));
+            List<BookSummaryDTO> content = new ArrayList<>();
+            long from = (long) page * size;
+            for (long i = from; i < ranked.length; i++) {
+                content.add(seg.docs.get(ranked[(int) i]));
+            }
+            return new PageImpl<>(content, pageable, total);
+        } finally {
+            acc.reset();
+            lock.readLock().unlock();
+        }
+    }
+
+    // Id tất cả sách khớp từ khóa, theo thứ tự độ liên quan (dùng kết hợp với FacetIndex)
+    public List<Long> matchingBookIds(String query) {
+        List<Long> ids = new ArrayList<>();
+        for (BookSummaryDTO book : search(query, null, 0, Integer.MAX_VALUE).getContent()) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segment.liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean hasMatch(Accumulator acc, int required, Segment seg, Long categoryId) {
+        for (int i = 0; i < acc.touchedCount; i++) {
+            int doc = acc.touched[i];
+            if (acc.matchedTerms[doc] >= required && matchesCategory(seg.docs.get(doc), categoryId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesCategory(BookSummaryDTO book, Long categoryId) {
+        return categoryId == null || categoryId.equals(book.getCategoryId());
+    }
+
+    // Gọi trong write lock
+    private void compactIfNeeded() {
+        int deletedCount = segment.docs.size() - segment.liveDocs;
+        if (segment.docs.size() >= COMPACT_MIN_DOCS && deletedCount > segment.docs.size() * COMPACT_RATIO) {
+            Segment compacted = new Segment();
+            for (int doc = 0; doc < segment.docs.size(); doc++) {
+                if (!segment.deleted.get(doc)) {
+                    compacted.add(segment.docs.get(doc));
+                }
+            }
+            segment = compacted;
+        }
+    }
+
+    // Một phiên bản index: doc id nội bộ tăng dần, xóa bằng tombstone
+    private static class Segment {
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final List<BookSummaryDTO> docs = new ArrayList<>();
+        private final Map<Long, Integer> docIdByBookId = new HashMap<>();
+        private final BitSet deleted = new BitSet();
+        private float[] lengths = new float[64];
+        private double totalLength;
+        private int liveDocs;
+
+        void add(BookSummaryDTO book) {
+            int doc = docs.size();
+            Map<String, Float> freqs = new HashMap<>();
+            addField(freqs, book.getTitle(), TITLE_WEIGHT);
+            addField(freqs, book.getAuthorName(), AUTHOR_WEIGHT);
+            addField(freqs, book.getCategoryName(), CATEGORY_WEIGHT);
+            addField(freqs, book.getDescription(), DESCRIPTION_WEIGHT);
+
+            float length = 0;
+            for (Map.Entry<String, Float> entry : freqs.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), k -> new Postings()).add(doc, entry.getValue());
+                length += entry.getValue();
+            }
+
+            if (doc == lengths.length) {
+                lengths = Arrays.copyOf(lengths, lengths.length * 2);
+            }
+            lengths[doc] = length;
+            totalLength += length;
+            docs.add(book);
+            docIdByBookId.put(book.getId(), doc);
+            liveDocs++;
+        }
+
+        void delete(Long bookId) {
+            Integer doc = docIdByBookId.remove(bookId);
+            if (doc != null && !deleted.get(doc)) {
+                deleted.set(doc);
+                totalLength -= lengths[doc];
+                liveDocs--;
+            }
+        }
+
+        float averageLength() {
+            return liveDocs > 0 ? (float) (totalLength / liveDocs) : 1f;
+        }
+
+        private static void addField(Map<String, Float> freqs, String text, float weight) {
+            for (String token : TextAnalyzer.tokenize(text)) {
+                freqs.merge(token, weight, Float::sum);
+            }
+        }
+    }
+
+    // Điểm BM25 và số từ khóa khớp theo doc id; touched giữ các doc có điểm để duyệt và reset trong O(số doc khớp)
+    private static class Accumulator {
+        private float[] scores = new float[0];
+        private int[] matchedTerms = new int[0];
+        private int[] touched = new int[0];
+        private int touchedCount;
+
+        void ensureCapacity(int maxDoc) {
+            if (scores.length < maxDoc) {
+                int capacity = Math.max(maxDoc, scores.length + (scores.length >> 1));
+                scores = new float[capacity];
+                matchedTerms = new int[capacity];
+                touched = new int[capacity];
+            }
+        }
+
+        void add(int doc, float score) {
+            scores[doc] += score;
+            if (matchedTerms[doc]++ == 0) {
+                touched[touchedCount++] = doc;
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0;
+                matchedTerms[touched[i]] = 0;
+            }
+            touchedCount = 0;
+        }
+    }
+
+    // Danh sách doc chứa một term, lưu bằng mảng primitive để giảm bộ nhớ
+    private static class Postings {
+        private int[] docs = new int[4];
+        private float[] freqs = new float[4];
+        private int size;
+
+        void add(int doc, float freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+}
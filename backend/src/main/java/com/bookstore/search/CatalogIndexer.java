@@ -0,0 +1,149 @@
+package com.bookstore.search;
+
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.entity.Book;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.CatalogRebuiltEvent;
+import com.bookstore.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Nạp catalog vào các BookIndex lúc khởi động và đồng bộ khi có BookChangedEvent (sau khi commit).
+// Listener sau commit của các transaction khác nhau có thể chạy lệch thứ tự, nên event có version cũ hơn
+// event đã áp dụng cho cùng sách bị bỏ qua (không ghi đè snapshot mới bằng snapshot cũ)
+@Component
+public class CatalogIndexer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogIndexer.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private List<BookIndex> indexes;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final Object rebuildLock = new Object();
+    private final Object applyLock = new Object();
+    private final Queue<BookChangedEvent> pendingEvents = new ConcurrentLinkedQueue<>();
+    // bookId -> version của event cuối cùng đã áp dụng, chỉ truy cập trong applyLock
+    private final Map<Long, Long> appliedVersions = new HashMap<>();
+    private volatile boolean rebuilding = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildAll();
+    }
+
+    // Build lại toàn bộ index, event đến trong lúc build được xếp hàng và áp dụng sau
+    public void rebuildAll() {
+        synchronized (rebuildLock) {
+            rebuilding = true;
+            synchronized (applyLock) {
+                appliedVersions.clear();
+            }
+            try {
+                long start = System.currentTimeMillis();
+                List<BookSummaryDTO> books = loadCatalog();
+                for (BookIndex index : indexes) {
+                    index.rebuild(books);
+                }
+                eventPublisher.publishEvent(new CatalogRebuiltEvent(books));
+                logger.info("Indexed {} books into {} indexes in {} ms",
+                    books.size(), indexes.size(), System.currentTimeMillis() - start);
+            } finally {
+                rebuilding = false;
+                applyPendingEvents();
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onBookChanged(BookChangedEvent event) {
+        pendingEvents.add(event);
+        if (!rebuilding) {
+            applyPendingEvents();
+        }
+    }
+
+    private void applyPendingEvents() {
+        synchronized (applyLock) {
+            BookChangedEvent event;
+            while ((event = pendingEvents.poll()) != null) {
+                Long applied = appliedVersions.get(event.getBookId());
+                if (applied != null && applied > event.getVersion()) {
+                    logger.debug("Skipped stale {} of book {} (version {} < {})",
+                        event.getType(), event.getBookId(), event.getVersion(), applied);
+                    continue;
+                }
+                appliedVersions.put(event.getBookId(), event.getVersion());
+                for (BookIndex index : indexes) {
+                    try {
+                        if (event.isDeleted()) {
+                            index.remove(event.getBookId());
+                        } else {
+                            index.upsert(event.getBook());
+                        }
+                    } catch (Exception e) {
+                        logger.error("Failed to apply {} of book {} to {}",
+                            event.getType(), event.getBookId(), index.getClass().getSimpleName(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    // Đọc catalog theo lô bằng keyset trên id để không phải OFFSET, images của mỗi lô nạp bằng một query IN
+    private List<BookSummaryDTO> loadCatalog() {
+        List<BookSummaryDTO> books = new ArrayList<>();
+        long lastId = 0L;
+        while (true) {
+            List<Book> batch = bookRepository.findBatchAfterIdWithCategoryAndAuthor(lastId, PageRequest.of(0, BATCH_SIZE));
+            Map<Long, List<String>> imagesByBookId = loadImages(batch);
+            for (Book book : batch) {
+                books.add(BookSummaryDTO.fromBookWithDetails(book, imagesByBookId.get(book.getId())));
+            }
+            if (batch.size() < BATCH_SIZE) {
+                break;
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+        return books;
+    }
+
+    private Map<Long, List<String>> loadImages(List<Book> batch) {
+        Map<Long, List<String>> imagesByBookId = new HashMap<>();
+        if (batch.isEmpty()) {
+            return imagesByBookId;
+        }
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (Book book : batch) {
+            ids.add(book.getId());
+        }
+        for (Object[] row : bookRepository.findImagesByBookIdIn(ids)) {
+            imagesByBookId.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((String) row[1]);
+        }
+        return imagesByBookId;
+    }
+}
@@ -0,0 +1,361 @@
+package com.bookstore.search;
+
+import com.bookstore.dto.BookSummaryDTO;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Index facet in-memory: mỗi giá trị facet là một bitmap trên doc id nội bộ, đếm bằng phép AND bitmap
+@Component
+public class FacetIndex implements BookIndex {
+
+    public enum Facet {
+        CATEGORY("category"),
+        AUTHOR("author"),
+        LANGUAGE("language"),
+        PRICE("price"),
+        IN_STOCK("inStock");
+
+        private final String param;
+
+        Facet(String param) {
+            this.param = param;
+        }
+
+        public String getParam() {
+            return param;
+        }
+    }
+
+    // Khoảng giá (VND): [PRICE_BOUNDS[i], PRICE_BOUNDS[i+1])
+    private static final long[] PRICE_BOUNDS = {0, 100000, 200000, 300000, 500000};
+
+    private static final Comparator<BookSummaryDTO> NEWEST_FIRST =
+        Comparator.comparing(BookSummaryDTO::getId, Comparator.reverseOrder());
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Doc id nội bộ được tái sử dụng khi sách bị xóa nên bitmap luôn dày đặc
+    private final List<BookSummaryDTO> docs = new ArrayList<>();
+    private final List<String[]> docValues = new ArrayList<>();
+    private final Map<Long, Integer> docIdByBookId = new HashMap<>();
+    private final Deque<Integer> freeDocIds = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+
+    private final Map<Facet, Map<String, BitSet>> bitmaps = new EnumMap<>(Facet.class);
+    private final Map<Facet, Map<String, String>> labels = new EnumMap<>(Facet.class);
+
+    public FacetIndex() {
+        for (Facet facet : Facet.values()) {
+            bitmaps.put(facet, new HashMap<>());
+            labels.put(facet, new HashMap<>());
+        }
+    }
+
+    @Override
+    public void rebuild(List<BookSummaryDTO> books) {
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            docValues.clear();
+            docIdByBookId.clear();
+            freeDocIds.clear();
+            live.clear();
+            for (Facet facet : Facet.values()) {
+                bitmaps.get(facet).clear();
+                labels.get(facet).clear();
+            }
+            for (BookSummaryDTO book : books) {
+                add(book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(BookSummaryDTO book) {
+        lock.writeLock().lock();
+        try {
+            delete(book.getId());
+            add(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            delete(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Lọc theo các giá trị facet đã chọn (OR trong cùng facet, AND giữa các facet) và đếm theo từng giá trị.
+    // Số đếm của một facet bỏ qua lựa chọn của chính facet đó để người dùng vẫn thấy các lựa chọn khác.
+    // rankedBookIds != null: chỉ giữ các sách này và giữ nguyên thứ tự (kết quả tìm kiếm theo từ khóa)
+    public FacetResult search(Map<Facet, Set<String>> selections, List<Long> rankedBookIds,
+                              Comparator<BookSummaryDTO> sort, int page, int size) {
+        lock.readLock().lock();
+        try {
+            BitSet scope = (BitSet) live.clone();
+            if (rankedBookIds != null) {
+                BitSet matched = new BitSet();
+                for (Long bookId : rankedBookIds) {
+                    Integer doc = docIdByBookId.get(bookId);
+                    if (doc != null) {
+                        matched.set(doc);
+                    }
+                }
+                scope.and(matched);
+            }
+
+            Map<Facet, BitSet> selected = new EnumMap<>(Facet.class);
+            for (Map.Entry<Facet, Set<String>> entry : selections.entrySet()) {
+                if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                    selected.put(entry.getKey(), union(entry.getKey(), entry.getValue()));
+                }
+            }
+
+            Map<Facet, List<FacetCount>> counts = new EnumMap<>(Facet.class);
+            for (Facet facet : Facet.values()) {
+                BitSet base = (BitSet) scope.clone();
+                for (Map.Entry<Facet, BitSet> entry : selected.entrySet()) {
+                    if (entry.getKey() != facet) {
+                        base.and(entry.getValue());
+                    }
+                }
+                counts.put(facet, countValues(facet, base));
+            }
+
+            BitSet result = scope;
+            for (BitSet bitmap : selected.values()) {
+                result.and(bitmap);
+            }
+
+            int total = result.cardinality();
+            int from = (int) Math.min((long) page * size, total);
+            int to = (int) Math.min((long) from + size, total);
+            List<BookSummaryDTO> content = new ArrayList<>();
+
+            if (rankedBookIds != null && sort == null) {
+                int position = 0;
+                for (Long bookId : rankedBookIds) {
+                    Integer doc = docIdByBookId.get(bookId);
+                    if (doc != null && result.get(doc)) {
+                        if (position >= from && position < to) {
+                            content.add(docs.get(doc));
+                        }
+                        position++;
+                    }
+                }
+            } else {
+                content = topK(result, sort != null ? sort : NEWEST_FIRST, to);
+                content = new ArrayList<>(content.subList(from, content.size()));
+            }
+            return new FacetResult(content, total, counts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lấy limit phần tử đầu theo comparator bằng heap giới hạn, không sort toàn bộ kết quả
+    private List<BookSummaryDTO> topK(BitSet result, Comparator<BookSummaryDTO> sort, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<BookSummaryDTO> heap = new PriorityQueue<>(limit, sort.reversed());
+        for (int doc = result.nextSetBit(0); doc >= 0; doc = result.nextSetBit(doc + 1)) {
+            BookSummaryDTO book = docs.get(doc);
+            if (heap.size() < limit) {
+                heap.offer(book);
+            } else if (sort.compare(book, heap.peek()) < 0) {
+                heap.poll();
+                heap.offer(book);
+            }
+        }
+        List<BookSummaryDTO> top = new ArrayList<>(heap);
+        top.sort(sort);
+        return top;
+    }
+
+    // Gọi trong write lock
+    private void add(BookSummaryDTO book) {
+        int doc;
+        if (freeDocIds.isEmpty()) {
+            doc = docs.size();
+            docs.add(book);
+            docValues.add(null);
+        } else {
+            doc = freeDocIds.poll();
+            docs.set(doc, book);
+        }
+
+        String[] values = new String[Facet.values().length];
+        values[Facet.CATEGORY.ordinal()] = idValue(book.getCategoryId(), book.getCategoryName(), Facet.CATEGORY);
+        values[Facet.AUTHOR.ordinal()] = idValue(book.getAuthorId(), book.getAuthorName(), Facet.AUTHOR);
+        values[Facet.LANGUAGE.ordinal()] = languageValue(book.getLanguage());
+        values[Facet.PRICE.ordinal()] = priceBucket(book.getPrice());
+        values[Facet.IN_STOCK.ordinal()] = String.valueOf(book.getStockQuantity() != null && book.getStockQuantity() > 0);
+
+        for (Facet facet : Facet.values()) {
+            String value = values[facet.ordinal()];
+            if (value != null) {
+                bitmaps.get(facet).computeIfAbsent(value, v -> new BitSet()).set(doc);
+            }
+        }
+        docValues.set(doc, values);
+        docIdByBookId.put(book.getId(), doc);
+        live.set(doc);
+    }
+
+    // Gọi trong write lock
+    private void delete(Long bookId) {
+        Integer doc = docIdByBookId.remove(bookId);
+        if (doc == null) {
+            return;
+        }
+        String[] values = docValues.get(doc);
+        for (Facet facet : Facet.values()) {
+            String value = values[facet.ordinal()];
+            if (value == null) {
+                continue;
+            }
+            BitSet bitmap = bitmaps.get(facet).get(value);
+            bitmap.clear(doc);
+            if (bitmap.isEmpty()) {
+                bitmaps.get(facet).remove(value);
+                labels.get(facet).remove(value);
+            }
+        }
+        live.clear(doc);
+        docs.set(doc, null);
+        docValues.set(doc, null);
+        freeDocIds.push(doc);
+    }
+
+    private BitSet union(Facet facet, Collection<String> values) {
+        BitSet union = new BitSet();
+        for (String value : values) {
+            BitSet bitmap = bitmaps.get(facet).get(value);
+            if (bitmap != null) {
+                union.or(bitmap);
+            }
+        }
+        return union;
+    }
+
+    // Một lượt qua các doc của base, cộng dồn theo giá trị facet của từng doc (không AND từng bitmap giá trị)
+    private List<FacetCount> countValues(Facet facet, BitSet base) {
+        Map<String, int[]> tally = new HashMap<>();
+        int ordinal = facet.ordinal();
+        for (int doc = base.nextSetBit(0); doc >= 0; doc = base.nextSetBit(doc + 1)) {
+            String value = docValues.get(doc)[ordinal];
+            if (value != null) {
+                tally.computeIfAbsent(value, v -> new int[1])[0]++;
+            }
+        }
+        List<FacetCount> result = new ArrayList<>(tally.size());
+        for (Map.Entry<String, int[]> entry : tally.entrySet()) {
+            String label = labels.get(facet).getOrDefault(entry.getKey(), entry.getKey());
+            result.add(new FacetCount(entry.getKey(), label, entry.getValue()[0]));
+        }
+        result.sort(Comparator.comparingInt(FacetCount::getCount).reversed().thenComparing(FacetCount::getLabel));
+        return result;
+    }
+
+    private String idValue(Long id, String name, Facet facet) {
+        if (id == null) {
+            return null;
+        }
+        String value = String.valueOf(id);
+        if (name != null) {
+            labels.get(facet).put(value, name);
+        }
+        return value;
+    }
+
+    private String languageValue(String language) {
+        if (language == null || language.trim().isEmpty()) {
+            return null;
+        }
+        String value = language.trim().toLowerCase();
+        labels.get(Facet.LANGUAGE).putIfAbsent(value, language.trim());
+        return value;
+    }
+
+    // Mã khoảng giá dạng "min-max" hoặc "min+" cho khoảng cuối
+    public static String priceBucket(BigDecimal price) {
+        if (price == null) {
+            return null;
+        }
+        long value = price.longValue();
+        for (int i = PRICE_BOUNDS.length - 1; i >= 0; i--) {
+            if (value >= PRICE_BOUNDS[i]) {
+                return i == PRICE_BOUNDS.length - 1
+                    ? PRICE_BOUNDS[i] + "+"
+                    : PRICE_BOUNDS[i] + "-" + PRICE_BOUNDS[i + 1];
+            }
+        }
+        return PRICE_BOUNDS[0] + "-" + PRICE_BOUNDS[1];
+    }
+
+    // Số lượng sách của một giá trị facet
+    public static class FacetCount {
+        private final String value;
+        private final String label;
+        private final int count;
+
+        public FacetCount(String value, String label, int count) {
+            this.value = value;
+            this.label = label;
+            this.count = count;
+        }
+
+        public String getValue() { return value; }
+        public String getLabel() { return label; }
+        public int getCount() { return count; }
+    }
+
+    // Trang kết quả kèm số đếm của tất cả facet
+    public static class FacetResult {
+        private final List<BookSummaryDTO> content;
+        private final int totalElements;
+        private final Map<Facet, List<FacetCount>> facets;
+
+        public FacetResult(List<BookSummaryDTO> content, int totalElements, Map<Facet, List<FacetCount>> facets) {
+            this.content = content;
+            this.totalElements = totalElements;
+            this.facets = facets;
+        }
+
+        public List<BookSummaryDTO> getContent() { return content; }
+        public int getTotalElements() { return totalElements; }
+
+        // Key theo tên tham số request (category, author, ...)
+        public Map<String, List<FacetCount>> getFacets() {
+            Map<String, List<FacetCount>> result = new LinkedHashMap<>();
+            for (Map.Entry<Facet, List<FacetCount>> entry : facets.entrySet()) {
+                result.put(entry.getKey().getParam(), entry.getValue());
+            }
+            return result;
+        }
+    }
+}
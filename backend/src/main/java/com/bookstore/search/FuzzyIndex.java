@@ -0,0 +1,497 @@
+package com.bookstore.search;
+
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.event.AuthorChangedEvent;
+import com.bookstore.repository.AuthorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Tìm kiếm chịu lỗi gõ trên tên sách và tên tác giả: từ điển các từ đã bỏ dấu, sinh ứng viên bằng trigram
+// rồi kiểm tra bằng khoảng cách chỉnh sửa có giới hạn ("nha gia kym" -> "Nhà Giả Kim").
+// Chỉ so khớp trên từ điển (nhỏ hơn nhiều so với số sách), sau đó mới đi qua danh sách sách của từ khớp.
+@Component
+public class FuzzyIndex implements BookIndex {
+
+    private static final float TITLE_WEIGHT = 2.0f;
+    private static final float AUTHOR_WEIGHT = 1.0f;
+
+    // Giới hạn để giữ độ trễ ổn định với query dài hoặc từ quá phổ biến
+    private static final int MAX_QUERY_TOKENS = 8;
+    private static final int MAX_CANDIDATES_PER_TOKEN = 64;
+
+    // Compact index khi số doc đã xóa (tombstone) vượt tỉ lệ này
+    private static final double COMPACT_RATIO = 0.25;
+    private static final int COMPACT_MIN_DOCS = 1000;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Segment segment = new Segment();
+
+    // Mảng tạm theo doc id dùng lại giữa các lần tìm kiếm trên cùng thread, tránh cấp phát lớn mỗi request
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    @Override
+    public void rebuild(List<BookSummaryDTO> books) {
+        Segment fresh = new Segment();
+        for (Object[] row : authorRepository.findAllIdAndName()) {
+            fresh.putAuthor((Long) row[0], (String) row[1]);
+        }
+        for (BookSummaryDTO book : books) {
+            fresh.add(book);
+        }
+        lock.writeLock().lock();
+        try {
+            segment = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(BookSummaryDTO book) {
+        lock.writeLock().lock();
+        try {
+            segment.delete(book.getId());
+            // Tác giả mới tạo trong cùng request có thể chưa kịp qua onAuthorChanged
+            if (book.getAuthorId() != null && !segment.authorNames.containsKey(book.getAuthorId())
+                    && book.getAuthorName() != null) {
+                segment.putAuthor(book.getAuthorId(), book.getAuthorName());
+            }
+            segment.add(book);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            segment.delete(bookId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Đổi tên tác giả chỉ cập nhật từ điển tác giả, không phải index lại sách
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onAuthorChanged(AuthorChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.isDeleted()) {
+                segment.removeAuthor(event.getAuthorId());
+            } else {
+                segment.putAuthor(event.getAuthorId(), event.getName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Tìm sách theo tên sách/tác giả có lỗi gõ hoặc thiếu dấu, xếp theo mức độ khớp; categoryId có thể null
+    public Page<BookSummaryDTO> search(String query, Long categoryId, int page, int size) {
+        PageRequest pageable = PageRequest.of(page, size);
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.tokenize(TextAnalyzer.fold(query))));
+        if (tokens.size() > MAX_QUERY_TOKENS) {
+            tokens = tokens.subList(0, MAX_QUERY_TOKENS);
+        }
+        if (tokens.isEmpty()) {
+            return new PageImpl<>(new ArrayList<>(), pageable, 0);
+        }
+
+        Scratch s = scratch.get();
+        int touchedCount = 0;
+        lock.readLock().lock();
+        try {
+            Segment seg = segment;
+            s.ensure(seg.docs.size());
+
+            for (int t = 0; t < tokens.size(); t++) {
+                int stamp = t + 1;
+                int tokenTouchedCount = 0;
+                for (Candidate candidate : seg.candidates(tokens.get(t))) {
+                    float similarity = 1f - (float) candidate.distance / (maxDistance(tokens.get(t).length()) + 1);
+                    IntList titleDocs = seg.titleDocs.get(candidate.word);
+                    for (int i = 0; i < titleDocs.size; i++) {
+                        tokenTouchedCount = s.offer(titleDocs.values[i], stamp, TITLE_WEIGHT * similarity, tokenTouchedCount, seg);
+                    }
+                    Set<Long> authors = seg.authorsByWord.get(candidate.word);
+                    if (authors != null) {
+                        for (Long authorId : authors) {
+                            Set<Integer> docs = seg.docsByAuthor.get(authorId);
+                            if (docs != null) {
+                                for (int doc : docs) {
+                                    tokenTouchedCount = s.offer(doc, stamp, AUTHOR_WEIGHT * similarity, tokenTouchedCount, seg);
+                                }
+                            }
+                        }
+                    }
+                }
+                // Mỗi từ khóa chỉ tính mức khớp tốt nhất của nó trong một sách
+                for (int i = 0; i < tokenTouchedCount; i++) {
+                    int doc = s.tokenTouched[i];
+                    s.scores[doc] += s.tokenScores[doc];
+                    if (s.matched[doc]++ == 0) {
+                        s.touched[touchedCount++] = doc;
+                    }
+                }
+            }
+
+            // Ưu tiên sách khớp tất cả từ khóa, nếu không có thì lấy sách khớp nhiều từ nhất
+            int required = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = s.touched[i];
+                if (matchesCategory(seg.docs.get(doc), categoryId)) {
+                    required = Math.max(required, s.matched[doc]);
+                }
+            }
+
+            int limit = (int) Math.min((long) (page + 1) * size, Integer.MAX_VALUE);
+            float[] scores = s.scores;
+            PriorityQueue<Integer> top = new PriorityQueue<>(
+                (a, b) -> scores[a] != scores[b] ? Float.compare(scores[a], scores[b]) : Integer.compare(b, a));
+            long total = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = s.touched[i];
+                if (required == 0 || s.matched[doc] < required || !matchesCategory(seg.docs.get(doc), categoryId)) {
+                    continue;
+                }
+                total++;
+                top.offer(doc);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            Integer[] ranked = top.toArray(new Integer[0]);
+            Arrays.sort(ranked, (a, b) -> scores[a] != scores[b] ? Float.compare(scores[b], scores[a]) : Integer.compare(a, b));
+            List<BookSummaryDTO> content = new ArrayList<>();
+            // Tính offset bằng long: page * size kiểu int bị tràn với page lớn; vượt quá kết quả thì trang rỗng
+            long from = (long) page * size;
+            for (long i = from; i < ranked.length; i++) {
+                content.add(seg.docs.get(ranked[(int) i]));
+            }
+            return new PageImpl<>(content, pageable, total);
+        } finally {
+            s.reset(touchedCount);
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean matchesCategory(BookSummaryDTO book, Long categoryId) {
+        return categoryId == null || categoryId.equals(book.getCategoryId());
+    }
+
+    // Số lỗi cho phép theo độ dài từ: từ rất ngắn phải khớp chính xác
+    private static int maxDistance(int length) {
+        if (length <= 2) {
+            return 0;
+        }
+        return length <= 5 ? 1 : 2;
+    }
+
+    // Gọi trong write lock
+    private void compactIfNeeded() {
+        int deletedCount = segment.docs.size() - segment.liveDocs;
+        if (segment.docs.size() >= COMPACT_MIN_DOCS && deletedCount > segment.docs.size() * COMPACT_RATIO) {
+            Segment compacted = new Segment();
+            segment.authorNames.forEach(compacted::putAuthor);
+            for (int doc = 0; doc < segment.docs.size(); doc++) {
+                if (!segment.deleted.get(doc)) {
+                    compacted.add(segment.docs.get(doc));
+                }
+            }
+            segment = compacted;
+        }
+    }
+
+    // Khoảng cách chỉnh sửa (Damerau - đổi chỗ hai ký tự kề nhau tính là một lỗi), dừng sớm khi vượt maxDistance.
+    // Trả về maxDistance + 1 nếu vượt
+    static int boundedDistance(String a, String b, int maxDistance) {
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], maxDistance + 1);
+    }
+
+    // Trigram của từ có đánh dấu đầu/cuối: "kim" -> "$ki", "kim", "im$"
+    private static List<String> grams(String word) {
+        String padded = "$" + word + "$";
+        List<String> grams = new ArrayList<>(Math.max(1, padded.length() - 2));
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    // Một phiên bản index: doc id nội bộ tăng dần, xóa bằng tombstone (giống BookSearchIndex)
+    private static class Segment {
+        // Từ điển: từ đã bỏ dấu -> word id, trigram -> các word id chứa trigram đó
+        private final Map<String, Integer> wordIds = new HashMap<>();
+        private final List<String> words = new ArrayList<>();
+        private final Map<String, IntList> wordsByGram = new HashMap<>();
+
+        // Theo word id: các doc có từ trong tên sách, các tác giả có từ trong tên
+        private final List<IntList> titleDocs = new ArrayList<>();
+        private final Map<Integer, Set<Long>> authorsByWord = new HashMap<>();
+
+        private final Map<Long, String> authorNames = new HashMap<>();
+        private final Map<Long, int[]> authorWords = new HashMap<>();
+        private final Map<Long, Set<Integer>> docsByAuthor = new HashMap<>();
+
+        private final List<BookSummaryDTO> docs = new ArrayList<>();
+        private final Map<Long, Integer> docIdByBookId = new HashMap<>();
+        private final BitSet deleted = new BitSet();
+        private int liveDocs;
+
+        void add(BookSummaryDTO book) {
+            int doc = docs.size();
+            for (String token : new LinkedHashSet<>(TextAnalyzer.tokenize(TextAnalyzer.fold(book.getTitle())))) {
+                titleDocs.get(wordId(token)).add(doc);
+            }
+            if (book.getAuthorId() != null) {
+                docsByAuthor.computeIfAbsent(book.getAuthorId(), k -> new HashSet<>()).add(doc);
+            }
+            docs.add(book);
+            docIdByBookId.put(book.getId(), doc);
+            liveDocs++;
+        }
+
+        void delete(Long bookId) {
+            Integer doc = docIdByBookId.remove(bookId);
+            if (doc != null && !deleted.get(doc)) {
+                deleted.set(doc);
+                Long authorId = docs.get(doc).getAuthorId();
+                if (authorId != null && docsByAuthor.containsKey(authorId)) {
+                    docsByAuthor.get(authorId).remove(doc);
+                }
+                liveDocs--;
+            }
+        }
+
+        void putAuthor(Long authorId, String name) {
+            removeAuthor(authorId);
+            if (name == null) {
+                return;
+            }
+            Set<String> tokens = new LinkedHashSet<>(TextAnalyzer.tokenize(TextAnalyzer.fold(name)));
+            int[] ids = new int[tokens.size()];
+            int i = 0;
+            for (String token : tokens) {
+                ids[i] = wordId(token);
+                authorsByWord.computeIfAbsent(ids[i], k -> new HashSet<>()).add(authorId);
+                i++;
+            }
+            authorNames.put(authorId, name);
+            authorWords.put(authorId, ids);
+        }
+
+        void removeAuthor(Long authorId) {
+            authorNames.remove(authorId);
+            int[] ids = authorWords.remove(authorId);
+            if (ids == null) {
+                return;
+            }
+            for (int id : ids) {
+                Set<Long> authors = authorsByWord.get(id);
+                if (authors != null) {
+                    authors.remove(authorId);
+                    if (authors.isEmpty()) {
+                        authorsByWord.remove(id);
+                    }
+                }
+            }
+        }
+
+        private int wordId(String word) {
+            Integer id = wordIds.get(word);
+            if (id != null) {
+                return id;
+            }
+            int newId = words.size();
+            words.add(word);
+            wordIds.put(word, newId);
+            titleDocs.add(new IntList());
+            for (String gram : new LinkedHashSet<>(grams(word))) {
+                wordsByGram.computeIfAbsent(gram, k -> new IntList()).add(newId);
+            }
+            return newId;
+        }
+
+        // Các từ trong từ điển cách token không quá maxDistance, gần nhất trước.
+        // Lọc bằng q-gram: mỗi lỗi làm mất tối đa 3 trigram nên từ khớp phải chung ít nhất grams - 3 * maxDistance
+        List<Candidate> candidates(String token) {
+            int maxDistance = maxDistance(token.length());
+            List<Candidate> result = new ArrayList<>();
+            Integer exact = wordIds.get(token);
+            // Token là một từ có thật trong từ điển thì bớt một mức lỗi: với âm tiết ngắn ("nha" - "nhan", "ha")
+            // các từ lân cận thường là từ khác nghĩa và có danh sách sách rất dài
+            if (exact != null && hasLiveEntries(exact)) {
+                maxDistance--;
+            }
+            if (maxDistance == 0) {
+                if (exact != null) {
+                    result.add(new Candidate(exact, 0));
+                }
+                return result;
+            }
+
+            List<String> tokenGrams = new ArrayList<>(new LinkedHashSet<>(grams(token)));
+            int threshold = Math.max(1, tokenGrams.size() - 3 * maxDistance);
+            Map<Integer, Integer> shared = new HashMap<>();
+            for (String gram : tokenGrams) {
+                IntList ids = wordsByGram.get(gram);
+                if (ids == null) {
+                    continue;
+                }
+                for (int i = 0; i < ids.size; i++) {
+                    shared.merge(ids.values[i], 1, Integer::sum);
+                }
+            }
+            for (Map.Entry<Integer, Integer> entry : shared.entrySet()) {
+                if (entry.getValue() < threshold) {
+                    continue;
+                }
+                String word = words.get(entry.getKey());
+                int distance = entry.getKey().equals(exact) ? 0 : boundedDistance(token, word, maxDistance);
+                if (distance <= maxDistance && hasLiveEntries(entry.getKey())) {
+                    result.add(new Candidate(entry.getKey(), distance));
+                }
+            }
+            result.sort((a, b) -> a.distance != b.distance ? Integer.compare(a.distance, b.distance)
+                : Integer.compare(titleDocs.get(b.word).size, titleDocs.get(a.word).size));
+            return result.size() > MAX_CANDIDATES_PER_TOKEN
+                ? new ArrayList<>(result.subList(0, MAX_CANDIDATES_PER_TOKEN)) : result;
+        }
+
+        // Từ chỉ còn trong sách đã xóa/tác giả đã đổi tên thì không chiếm chỗ ứng viên
+        private boolean hasLiveEntries(int word) {
+            IntList docs = titleDocs.get(word);
+            for (int i = 0; i < docs.size; i++) {
+                if (!deleted.get(docs.values[i])) {
+                    return true;
+                }
+            }
+            return authorsByWord.containsKey(word);
+        }
+    }
+
+    // Một từ trong từ điển khớp với từ khóa
+    private static class Candidate {
+        private final int word;
+        private final int distance;
+
+        Candidate(int word, int distance) {
+            this.word = word;
+            this.distance = distance;
+        }
+    }
+
+    // Danh sách int tăng dần kích thước
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    // Bộ nhớ tạm của một lần tìm kiếm, chỉ các phần tử đã chạm vào được xóa lại sau khi dùng
+    private static class Scratch {
+        private float[] scores = new float[0];
+        private float[] tokenScores = new float[0];
+        private int[] matched = new int[0];
+        private int[] stamps = new int[0];
+        private int[] touched = new int[0];
+        private int[] tokenTouched = new int[0];
+
+        void ensure(int maxDoc) {
+            if (scores.length < maxDoc) {
+                int length = Math.max(maxDoc, scores.length * 2);
+                scores = new float[length];
+                tokenScores = new float[length];
+                matched = new int[length];
+                stamps = new int[length];
+                touched = new int[length];
+                tokenTouched = new int[length];
+            }
+        }
+
+        // Ghi nhận mức khớp của doc cho từ khóa hiện tại (stamp), giữ mức cao nhất
+        int offer(int doc, int stamp, float score, int tokenTouchedCount, Segment seg) {
+            if (seg.deleted.get(doc)) {
+                return tokenTouchedCount;
+            }
+            if (stamps[doc] != stamp) {
+                stamps[doc] = stamp;
+                tokenScores[doc] = score;
+                tokenTouched[tokenTouchedCount++] = doc;
+            } else if (score > tokenScores[doc]) {
+                tokenScores[doc] = score;
+            }
+            return tokenTouchedCount;
+        }
+
+        void reset(int touchedCount) {
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                scores[doc] = 0;
+                matched[doc] = 0;
+                stamps[doc] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.bookstore.search;
+
+import com.bookstore.dto.BookSummaryDTO;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Index giá: id sách sắp theo (giá, id) trong hai mảng long song song, giá lưu bằng đơn vị 1/100 (cents).
+// Lọc khoảng giá bằng binary search, phân trang bằng vị trí trong mảng, histogram đếm bằng hiệu hai vị trí.
+@Component
+public class PriceIndex implements BookIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] prices = new long[64];
+    private long[] ids = new long[64];
+    private int size;
+
+    // Giá hiện tại của từng sách trong index, dùng để tìm lại vị trí khi cập nhật/xóa
+    private final Map<Long, Long> priceByBookId = new HashMap<>();
+
+    @Override
+    public void rebuild(List<BookSummaryDTO> books) {
+        List<BookSummaryDTO> priced = new ArrayList<>(books.size());
+        for (BookSummaryDTO book : books) {
+            if (book.getPrice() != null) {
+                priced.add(book);
+            }
+        }
+        long[] newPrices = new long[Math.max(64, priced.size())];
+        long[] newIds = new long[newPrices.length];
+        for (int i = 0; i < priced.size(); i++) {
+            newPrices[i] = toCents(priced.get(i).getPrice(), RoundingMode.HALF_UP);
+            newIds[i] = priced.get(i).getId();
+        }
+        sort(newPrices, newIds, priced.size());
+
+        lock.writeLock().lock();
+        try {
+            prices = newPrices;
+            ids = newIds;
+            size = priced.size();
+            priceByBookId.clear();
+            for (int i = 0; i < size; i++) {
+                priceByBookId.put(ids[i], prices[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(BookSummaryDTO book) {
+        lock.writeLock().lock();
+        try {
+            delete(book.getId());
+            if (book.getPrice() != null) {
+                insert(toCents(book.getPrice(), RoundingMode.HALF_UP), book.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            delete(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Một trang id sách có giá trong [minPrice, maxPrice] (null = không giới hạn), sắp theo giá rồi id
+    public RangePage range(BigDecimal minPrice, BigDecimal maxPrice, boolean descending, int page, int size) {
+        if (page < 0 || size <= 0) {
+            throw new IllegalArgumentException("page phải >= 0 và size phải > 0");
+        }
+        lock.readLock().lock();
+        try {
+            int from = lowerBound(minCents(minPrice));
+            int to = upperBound(maxCents(maxPrice));
+            int total = Math.max(0, to - from);
+            int skip = (int) Math.min((long) page * size, total);
+            int count = Math.min(size, total - skip);
+
+            List<Long> pageIds = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                pageIds.add(descending ? ids[to - 1 - skip - i] : ids[from + skip + i]);
+            }
+            return new RangePage(pageIds, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Histogram cho thanh trượt giá: chia [minPrice, maxPrice] (mặc định là giá thấp/cao nhất) thành tối đa
+    // buckets khoảng đều nhau với bước tròn (1, 2, 5 x 10^k), mỗi khoảng đếm bằng hai lần binary search
+    public Histogram histogram(BigDecimal minPrice, BigDecimal maxPrice, int buckets) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("Số khoảng giá phải lớn hơn 0");
+        }
+        lock.readLock().lock();
+        try {
+            int from = lowerBound(minCents(minPrice));
+            int to = upperBound(maxCents(maxPrice));
+            if (from >= to) {
+                return new Histogram(null, null, 0, new ArrayList<>());
+            }
+            long low = prices[from];
+            long high = prices[to - 1];
+            long step = niceStep((high - low) / buckets + 1);
+            long start = Math.floorDiv(low, step) * step;
+
+            List<Bucket> result = new ArrayList<>();
+            for (long bucketMin = start; bucketMin <= high; bucketMin += step) {
+                long bucketMax = bucketMin + step;
+                // Các khoảng đầu/cuối có thể vượt [minPrice, maxPrice] do làm tròn bước, chỉ đếm trong phạm vi
+                int count = Math.min(lowerBound(bucketMax), to) - Math.max(lowerBound(bucketMin), from);
+                result.add(new Bucket(fromCents(bucketMin), fromCents(bucketMax), Math.max(0, count)));
+            }
+            return new Histogram(fromCents(low), fromCents(high), to - from, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Gọi trong write lock
+    private void insert(long price, long bookId) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int position = position(price, bookId);
+        System.arraycopy(prices, position, prices, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        prices[position] = price;
+        ids[position] = bookId;
+        size++;
+        priceByBookId.put(bookId, price);
+    }
+
+    // Gọi trong write lock
+    private void delete(Long bookId) {
+        Long price = priceByBookId.remove(bookId);
+        if (price == null) {
+            return;
+        }
+        int position = position(price, bookId);
+        if (position < size && ids[position] == bookId) {
+            System.arraycopy(prices, position + 1, prices, position, size - position - 1);
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+    }
+
+    // Vị trí đầu tiên có (giá, id) >= (price, bookId)
+    private int position(long price, long bookId) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < price || (prices[mid] == price && ids[mid] < bookId)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Vị trí đầu tiên có giá >= price
+    private int lowerBound(long price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Vị trí đầu tiên có giá > price
+    private int upperBound(long price) {
+        return price == Long.MAX_VALUE ? size : lowerBound(price + 1);
+    }
+
+    // Sắp hai mảng song song theo (giá, id) - chỉ chạy khi rebuild
+    private static void sort(long[] prices, long[] ids, int size) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> prices[a] != prices[b]
+            ? Long.compare(prices[a], prices[b]) : Long.compare(ids[a], ids[b]));
+        long[] sortedPrices = new long[size];
+        long[] sortedIds = new long[size];
+        for (int i = 0; i < size; i++) {
+            sortedPrices[i] = prices[order[i]];
+            sortedIds[i] = ids[order[i]];
+        }
+        System.arraycopy(sortedPrices, 0, prices, 0, size);
+        System.arraycopy(sortedIds, 0, ids, 0, size);
+    }
+
+    // Làm tròn lên 1, 2 hoặc 5 x 10^k
+    private static long niceStep(long raw) {
+        long magnitude = 1;
+        while (magnitude <= raw / 10) {
+            magnitude *= 10;
+        }
+        for (long factor : new long[]{1, 2, 5, 10}) {
+            if (factor * magnitude >= raw) {
+                return factor * magnitude;
+            }
+        }
+        return 10 * magnitude;
+    }
+
+    // Cận dưới làm tròn lên, cận trên làm tròn xuống để không lấy thừa sách ngoài khoảng
+    private static long minCents(BigDecimal minPrice) {
+        return minPrice != null ? toCents(minPrice, RoundingMode.CEILING) : Long.MIN_VALUE;
+    }
+
+    private static long maxCents(BigDecimal maxPrice) {
+        return maxPrice != null ? toCents(maxPrice, RoundingMode.FLOOR) : Long.MAX_VALUE;
+    }
+
+    private static long toCents(BigDecimal price, RoundingMode rounding) {
+        return price.movePointRight(2).setScale(0, rounding).longValueExact();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    // Một trang id sách kèm tổng số sách trong khoảng giá
+    public static class RangePage {
+        private final List<Long> bookIds;
+        private final int totalElements;
+
+        public RangePage(List<Long> bookIds, int totalElements) {
+            this.bookIds = bookIds;
+            this.totalElements = totalElements;
+        }
+
+        public List<Long> getBookIds() { return bookIds; }
+        public int getTotalElements() { return totalElements; }
+    }
+
+    // Khoảng giá [min, max)
+    public static class Bucket {
+        private final BigDecimal min;
+        private final BigDecimal max;
+        private final int count;
+
+        public Bucket(BigDecimal min, BigDecimal max, int count) {
+            this.min = min;
+            this.max = max;
+            this.count = count;
+        }
+
+        public BigDecimal getMin() { return min; }
+        public BigDecimal getMax() { return max; }
+        public int getCount() { return count; }
+    }
+
+    // Histogram kèm giá thấp/cao nhất trong phạm vi (để đặt hai đầu thanh trượt)
+    public static class Histogram {
+        private final BigDecimal minPrice;
+        private final BigDecimal maxPrice;
+        private final int totalElements;
+        private final List<Bucket> buckets;
+
+        public Histogram(BigDecimal minPrice, BigDecimal maxPrice, int totalElements, List<Bucket> buckets) {
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            this.totalElements = totalElements;
+            this.buckets = buckets;
+        }
+
+        public BigDecimal getMinPrice() { return minPrice; }
+        public BigDecimal getMaxPrice() { return maxPrice; }
+        public int getTotalElements() { return totalElements; }
+        public List<Bucket> getBuckets() { return buckets; }
+    }
+}
@@ -0,0 +1,105 @@
+package com.bookstore.search;
+
+import com.bookstore.dto.BookSummaryDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Giữ mảng id các sách còn hàng để lấy mẫu ngẫu nhiên đều, không cần ORDER BY RAND()
+@Component
+public class RandomBookSampler implements BookIndex {
+
+    private long[] ids = new long[64];
+    private int size;
+    private final Map<Long, Integer> positions = new HashMap<>();
+
+    @Override
+    public synchronized void rebuild(List<BookSummaryDTO> books) {
+        ids = new long[Math.max(64, books.size())];
+        size = 0;
+        positions.clear();
+        for (BookSummaryDTO book : books) {
+            if (isInStock(book)) {
+                add(book.getId());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void upsert(BookSummaryDTO book) {
+        if (isInStock(book)) {
+            if (!positions.containsKey(book.getId())) {
+                add(book.getId());
+            }
+        } else {
+            remove(book.getId());
+        }
+    }
+
+    @Override
+    public synchronized void remove(Long bookId) {
+        Integer position = positions.remove(bookId);
+        if (position == null) {
+            return;
+        }
+        // Đưa phần tử cuối vào chỗ trống để xóa O(1)
+        long last = ids[--size];
+        if (position < size) {
+            ids[position] = last;
+            positions.put(last, position);
+        }
+    }
+
+    // Lấy k id khác nhau ngẫu nhiên đều, O(k) kỳ vọng
+    public synchronized List<Long> sample(int k) {
+        int count = Math.min(Math.max(k, 0), size);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> result = new ArrayList<>(count);
+
+        if (count * 2 <= size) {
+            // k nhỏ so với n: chọn ngẫu nhiên, bỏ qua vị trí trùng
+            Set<Integer> picked = new HashSet<>();
+            while (picked.size() < count) {
+                int position = random.nextInt(size);
+                if (picked.add(position)) {
+                    result.add(ids[position]);
+                }
+            }
+        } else {
+            // k gần bằng n: Fisher-Yates một phần trên bản sao
+            long[] copy = Arrays.copyOf(ids, size);
+            for (int i = 0; i < count; i++) {
+                int j = i + random.nextInt(size - i);
+                long tmp = copy[i];
+                copy[i] = copy[j];
+                copy[j] = tmp;
+                result.add(copy[i]);
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void add(Long bookId) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size] = bookId;
+        positions.put(bookId, size);
+        size++;
+    }
+
+    private boolean isInStock(BookSummaryDTO book) {
+        return book.getStockQuantity() != null && book.getStockQuantity() > 0;
+    }
+}
@@ -0,0 +1,337 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.OrderDTO;
+import com.bookstore.dto.OrderSummaryDTO;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Đặt hàng bất đồng bộ: request chỉ kiểm tra dữ liệu rồi đưa đơn vào hàng đợi giới hạn (trả 202 + token, hàng đợi đầy
+// thì từ chối để client thử lại sau), không giữ thread Tomcat trong suốt transaction. Một pool thread cố định lấy đơn
+// theo lô nhỏ và đặt cả lô trong một transaction qua OrderService; kết quả xem bằng polling hoặc SSE theo token
+@Service
+public class AsyncCheckoutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncCheckoutService.class);
+
+    public enum Status {
+        QUEUED, PROCESSING, COMPLETED, FAILED
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Value("${app.checkout.async.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.checkout.async.workers:4}")
+    private int workerCount;
+
+    @Value("${app.checkout.async.batch-size:20}")
+    private int batchSize;
+
+    @Value("${app.checkout.async.result-ttl-seconds:600}")
+    private long resultTtlSeconds;
+
+    @Value("${app.checkout.async.sse-timeout-ms:60000}")
+    private long sseTimeoutMs;
+
+    private BlockingQueue<Ticket> queue;
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "checkout-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::runWorker);
+        }
+        logger.info("Started {} async checkout workers (queue capacity {}, batch size {})",
+            workerCount, queueCapacity, batchSize);
+    }
+
+    // Dừng nhận đơn, chờ các lô đang chạy xong; đơn còn trong hàng đợi được báo thất bại
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (workers == null) {
+            return;
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Ticket ticket;
+        while ((ticket = queue.poll()) != null) {
+            fail(ticket, "Máy chủ đang dừng, vui lòng đặt hàng lại");
+        }
+    }
+
+    // Kiểm tra dữ liệu và đưa đơn vào hàng đợi; hàng đợi đầy thì ném QueueFullException
+    public TicketStatus submit(Long userId, OrderDTO orderDTO) {
+        checkoutService.validate(orderDTO);
+        if (!running) {
+            throw new QueueFullException("Hệ thống đặt hàng chưa sẵn sàng, vui lòng thử lại sau");
+        }
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), userId, orderDTO);
+        tickets.put(ticket.token, ticket);
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.token);
+            rejected.incrementAndGet();
+            throw new QueueFullException("Hệ thống đang quá tải, vui lòng thử lại sau");
+        }
+        accepted.incrementAndGet();
+        return ticket.toStatus();
+    }
+
+    // Trạng thái đơn theo token; null nếu không có hoặc không thuộc user (admin xem được mọi đơn)
+    public TicketStatus getStatus(String token, Long userId, boolean admin) {
+        Ticket ticket = findTicket(token, userId, admin);
+        return ticket != null ? ticket.toStatus() : null;
+    }
+
+    // Đăng ký nhận kết quả qua SSE: gửi ngay trạng thái hiện tại, đơn xong thì gửi kết quả và đóng kết nối
+    public SseEmitter subscribe(String token, Long userId, boolean admin) {
+        Ticket ticket = findTicket(token, userId, admin);
+        if (ticket == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        emitter.onCompletion(() -> ticket.emitters.remove(emitter));
+        emitter.onTimeout(() -> ticket.emitters.remove(emitter));
+        ticket.emitters.add(emitter);
+        send(emitter, ticket.toStatus());
+        // Đơn có thể đã xong trước khi emitter được thêm vào danh sách
+        if (ticket.isDone() && ticket.emitters.remove(emitter)) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queued", queue != null ? queue.size() : 0);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("workers", workerCount);
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batches.get());
+        stats.put("averageBatchSize", batches.get() > 0 ? (double) (completed.get() + failed.get()) / batches.get() : 0);
+        return stats;
+    }
+
+    // Bỏ kết quả đã quá hạn giữ
+    @Scheduled(fixedDelayString = "${app.checkout.async.cleanup-interval-ms:60000}")
+    public void cleanup() {
+        LocalDateTime expiredBefore = LocalDateTime.now().minusSeconds(resultTtlSeconds);
+        tickets.values().removeIf(ticket -> ticket.isDone() && ticket.completedAt.isBefore(expiredBefore));
+    }
+
+    private void runWorker() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Ticket first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Async checkout worker failed", e);
+                for (Ticket ticket : batch) {
+                    if (!ticket.isDone()) {
+                        fail(ticket, "Không thể tạo đơn hàng, vui lòng thử lại");
+                    }
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Cả lô trong một transaction; lỗi DB hoặc lỗi sau khi đã ghi làm cả lô rollback thì đặt lại từng đơn riêng
+    // để chỉ đơn lỗi thất bại
+    private void process(List<Ticket> batch) {
+        batches.incrementAndGet();
+        List<CheckoutService.BatchRequest> requests = new ArrayList<>(batch.size());
+        for (Ticket ticket : batch) {
+            ticket.status = Status.PROCESSING;
+            requests.add(new CheckoutService.BatchRequest(ticket.userId, ticket.orderDTO));
+        }
+        List<CheckoutService.BatchResult> results;
+        try {
+            results = orderService.createOrders(requests);
+        } catch (Exception e) {
+            logger.warn("Async checkout batch of {} orders rolled back, retrying one by one: {}",
+                batch.size(), e.getMessage());
+            for (Ticket ticket : batch) {
+                try {
+                    complete(ticket, OrderSummaryDTO.fromOrderWithDetails(
+                        orderService.createOrder(ticket.userId, ticket.orderDTO)));
+                } catch (Exception single) {
+                    fail(ticket, single.getMessage());
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            CheckoutService.BatchResult result = results.get(i);
+            if (result.getOrder() != null) {
+                complete(batch.get(i), OrderSummaryDTO.fromOrderWithDetails(result.getOrder()));
+            } else {
+                fail(batch.get(i), result.getError());
+            }
+        }
+    }
+
+    private void complete(Ticket ticket, OrderSummaryDTO order) {
+        ticket.order = order;
+        finish(ticket, Status.COMPLETED);
+        completed.incrementAndGet();
+    }
+
+    private void fail(Ticket ticket, String message) {
+        ticket.message = message;
+        finish(ticket, Status.FAILED);
+        failed.incrementAndGet();
+    }
+
+    private void finish(Ticket ticket, Status status) {
+        ticket.completedAt = LocalDateTime.now();
+        ticket.status = status;
+        TicketStatus result = ticket.toStatus();
+        for (SseEmitter emitter : ticket.emitters) {
+            if (ticket.emitters.remove(emitter)) {
+                send(emitter, result);
+                emitter.complete();
+            }
+        }
+    }
+
+    private Ticket findTicket(String token, Long userId, boolean admin) {
+        Ticket ticket = tickets.get(token);
+        if (ticket == null || (!admin && !ticket.userId.equals(userId))) {
+            return null;
+        }
+        return ticket;
+    }
+
+    private static void send(SseEmitter emitter, TicketStatus status) {
+        try {
+            emitter.send(SseEmitter.event().name("order").data(status));
+        } catch (Exception e) {
+            // Client đã đóng kết nối, vẫn xem được kết quả bằng polling
+            emitter.completeWithError(e);
+        }
+    }
+
+    // Trạng thái một đơn đặt bất đồng bộ; order có khi COMPLETED, message có khi FAILED
+    public static class TicketStatus {
+        private final String token;
+        private final Status status;
+        private final OrderSummaryDTO order;
+        private final String message;
+        private final LocalDateTime queuedAt;
+        private final LocalDateTime completedAt;
+
+        public TicketStatus(String token, Status status, OrderSummaryDTO order, String message,
+                            LocalDateTime queuedAt, LocalDateTime completedAt) {
+            this.token = token;
+            this.status = status;
+            this.order = order;
+            this.message = message;
+            this.queuedAt = queuedAt;
+            this.completedAt = completedAt;
+        }
+
+        public String getToken() { return token; }
+        public Status getStatus() { return status; }
+        public OrderSummaryDTO getOrder() { return order; }
+        public String getMessage() { return message; }
+        public LocalDateTime getQueuedAt() { return queuedAt; }
+        public LocalDateTime getCompletedAt() { return completedAt; }
+    }
+
+    // Hàng đợi đầy hoặc chưa sẵn sàng nhận đơn
+    public static class QueueFullException extends RuntimeException {
+        public QueueFullException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Ticket {
+        private final String token;
+        private final Long userId;
+        private final OrderDTO orderDTO;
+        private final LocalDateTime queuedAt = LocalDateTime.now();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private volatile Status status = Status.QUEUED;
+        private volatile OrderSummaryDTO order;
+        private volatile String message;
+        private volatile LocalDateTime completedAt;
+
+        Ticket(String token, Long userId, OrderDTO orderDTO) {
+            this.token = token;
+            this.userId = userId;
+            this.orderDTO = orderDTO;
+        }
+
+        boolean isDone() {
+            return status == Status.COMPLETED || status == Status.FAILED;
+        }
+
+        TicketStatus toStatus() {
+            return new TicketStatus(token, status, order, message, queuedAt, completedAt);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.bookstore.service;
 
 import com.bookstore.entity.Author;
+import com.bookstore.event.AuthorChangedEvent;
 import com.bookstore.repository.AuthorRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -20,6 +22,9 @@ public class AuthorService {
     @Autowired
     private AuthorRepository authorRepository;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     // Lấy tất cả tác giả
     public List<Author> getAllAuthors() {
         return authorRepository.findAllByOrderByNameAsc();
@@ -80,7 +85,7 @@ public class AuthorService {
             throw new RuntimeException("Tác giả đã tồn tại: " + author.getName());
         }
         
-        return authorRepository.save(author);
+        return publishSaved(authorRepository.save(author));
     }
     
     // Cập nhật tác giả
@@ -98,7 +103,7 @@ public class AuthorService {
         author.setBirthDate(authorDetails.getBirthDate());
         author.setNationality(authorDetails.getNationality());
         
-        return authorRepository.save(author);
+        return publishSaved(authorRepository.save(author));
     }
     
     // Xóa tác giả
@@ -114,6 +119,7 @@ public class AuthorService {
         // }
         
         authorRepository.deleteById(id);
+        eventPublisher.publishEvent(AuthorChangedEvent.deleted(id));
     }
     
     // Tìm tác giả theo tên chính xác
@@ -141,12 +147,12 @@ public class AuthorService {
     
     // Save author
     public Author saveAuthor(Author author) {
-        return authorRepository.save(author);
+        return publishSaved(authorRepository.save(author));
     }
     
     // Update author (simplified version)
     public Author updateAuthor(Author author) {
-        return authorRepository.save(author);
+        return publishSaved(authorRepository.save(author));
     }
     
     // Check if author has books
@@ -168,14 +174,15 @@ public class AuthorService {
         return authorRepository.findByNameContainingIgnoreCase(query);
     }
     
-    // Bulk delete authors
-    public void bulkDeleteAuthors(List<Long> authorIds) {
-        authorRepository.deleteAllById(authorIds);
-    }
-    
     // Lấy tác giả có nhiều sách nhất - đơn giản hóa
     public List<Author> getTopAuthors(int limit) {
         Pageable pageable = PageRequest.of(0, limit);
         return authorRepository.findAll(pageable).getContent();
     }
-}
\ No newline at end of file
+    
+    // Phát sự kiện để các index in-memory (autocomplete) cập nhật sau khi commit
+    private Author publishSaved(Author author) {
+        eventPublisher.publishEvent(AuthorChangedEvent.saved(author.getId(), author.getName()));
+        return author;
+    }
+}
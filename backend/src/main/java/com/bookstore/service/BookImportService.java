@@ -0,0 +1,724 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookDTO;
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.entity.Author;
+import com.bookstore.event.AuthorChangedEvent;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.repository.AuthorRepository;
+import com.bookstore.repository.BookRepository;
+import com.bookstore.repository.CategoryRepository;
+import com.bookstore.search.TextAnalyzer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Import sách hàng loạt từ CSV/JSON: tra cứu thể loại/tác giả/ISBN theo tập hợp, ghi bằng JDBC batch theo từng chunk
+// (Book dùng IDENTITY nên Hibernate không batch insert được)
+@Service
+public class BookImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookImportService.class);
+
+    // Chỉ trả về tối đa bấy nhiêu lỗi chi tiết, số lỗi tổng vẫn đầy đủ
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    // Số phần tử tối đa của một danh sách IN
+    private static final int IN_LIST_SIZE = 1000;
+
+    private static final String INSERT_BOOK_SQL =
+        "INSERT INTO books (title, description, isbn, price, stock_quantity, image_url, pages, language, " +
+        "category_id, author_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_IMAGE_SQL = "INSERT INTO book_images (book_id, images) VALUES (?, ?)";
+
+    public enum Format {
+        CSV, JSON;
+
+        // Xác định định dạng theo tham số format, nếu không có thì theo đuôi file
+        public static Format detect(String format, String filename) {
+            String value = format != null && !format.trim().isEmpty() ? format.trim()
+                : filename != null && filename.contains(".") ? filename.substring(filename.lastIndexOf('.') + 1) : "";
+            if ("csv".equalsIgnoreCase(value)) {
+                return CSV;
+            }
+            if ("json".equalsIgnoreCase(value)) {
+                return JSON;
+            }
+            throw new IllegalArgumentException("Định dạng import không hợp lệ: " + value + " (csv, json)");
+        }
+    }
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.import.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.import.max-rows:100000}")
+    private int maxRows;
+
+    // Giới hạn riêng của import; giới hạn multipart chung (spring.servlet.multipart.*) giữ ở mức upload ảnh
+    @Value("${app.import.max-file-size:50MB}")
+    private DataSize maxFileSize;
+
+    public DataSize getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    // Đọc, kiểm tra và ghi toàn bộ file; dòng lỗi được bỏ qua và báo cáo, các dòng hợp lệ vẫn được import
+    public ImportResult importBooks(InputStream input, Format format) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportResult result = new ImportResult();
+
+        // Đọc hết file trước khi ghi nên vượt giới hạn thì dừng mà chưa ghi gì
+        input = new LimitedInputStream(input, maxFileSize.toBytes());
+        List<Row> rows = format == Format.CSV ? parseCsv(input, result) : parseJson(input, result);
+        result.totalRows = rows.size() + result.failedRows;
+
+        List<Row> valid = validate(rows, result);
+        valid = resolveCategories(valid, result);
+        Set<Long> createdAuthorIds = new HashSet<>();
+        valid = resolveAuthors(valid, result, createdAuthorIds);
+        valid = rejectDuplicateIsbns(valid, result);
+
+        Set<Long> usedAuthorIds = new HashSet<>();
+        for (int from = 0; from < valid.size(); from += chunkSize) {
+            List<Row> chunk = valid.subList(from, Math.min(from + chunkSize, valid.size()));
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> insertChunk(chunk));
+                result.importedRows += chunk.size();
+                for (Row row : chunk) {
+                    usedAuthorIds.add(row.authorId);
+                }
+            } catch (RuntimeException e) {
+                // Cả chunk bị rollback: ghi lại từng dòng để chỉ dòng lỗi bị báo lỗi với nguyên nhân của nó
+                logger.warn("Import chunk of {} rows failed, retrying row by row: {}", chunk.size(), e.getMessage());
+                insertRowByRow(chunk, result, usedAuthorIds);
+            }
+        }
+        removeUnusedAuthors(createdAuthorIds, usedAuthorIds);
+
+        result.elapsedMs = System.currentTimeMillis() - start;
+        logger.info("Imported {}/{} books in {} ms ({} rows/s)",
+            result.importedRows, result.totalRows, result.elapsedMs, String.format("%.1f", result.getRowsPerSecond()));
+        return result;
+    }
+
+    // ===== Đọc file =====
+
+    private List<Row> parseJson(InputStream input, ImportResult result) throws IOException {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(input);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("File JSON không hợp lệ: " + e.getOriginalMessage());
+        }
+        if (root == null || !root.isArray()) {
+            throw new IllegalArgumentException("File JSON phải là một mảng các sách");
+        }
+        checkRowLimit(root.size());
+        List<Row> rows = new ArrayList<>(root.size());
+        int number = 0;
+        for (JsonNode node : root) {
+            number++;
+            try {
+                rows.add(new Row(number, objectMapper.treeToValue(node, BookDTO.class)));
+            } catch (Exception e) {
+                result.addError(number, null, "Dữ liệu không hợp lệ: " + e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    private List<Row> parseCsv(InputStream input, ImportResult result) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<String> header = readCsvRecord(reader);
+        if (header == null) {
+            return new ArrayList<>();
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            // Bỏ BOM của Excel ở cột đầu tiên
+            columns.put(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("title") || !columns.containsKey("price")) {
+            throw new IllegalArgumentException("File CSV phải có cột title và price");
+        }
+
+        List<Row> rows = new ArrayList<>();
+        int number = 0;
+        List<String> record;
+        while ((record = readCsvRecord(reader)) != null) {
+            if (record.size() == 1 && record.get(0).trim().isEmpty()) {
+                continue;
+            }
+            number++;
+            checkRowLimit(number);
+            try {
+                rows.add(new Row(number, toBookDTO(record, columns)));
+            } catch (RuntimeException e) {
+                result.addError(number, null, "Dữ liệu không hợp lệ: " + e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    private BookDTO toBookDTO(List<String> record, Map<String, Integer> columns) {
+        BookDTO book = new BookDTO();
+        book.setTitle(text(record, columns, "title"));
+        book.setDescription(text(record, columns, "description"));
+        book.setIsbn(text(record, columns, "isbn"));
+        String price = text(record, columns, "price");
+        book.setPrice(price != null ? new BigDecimal(price) : null);
+        String stock = text(record, columns, "stockquantity");
+        book.setStockQuantity(stock != null ? Integer.valueOf(stock) : null);
+        String pages = text(record, columns, "pages");
+        book.setPages(pages != null ? Integer.valueOf(pages) : null);
+        book.setLanguage(text(record, columns, "language"));
+        String categoryId = text(record, columns, "categoryid");
+        book.setCategoryId(categoryId != null ? Long.valueOf(categoryId) : null);
+        book.setCategoryName(text(record, columns, "categoryname"));
+        String authorId = text(record, columns, "authorid");
+        book.setAuthorId(authorId != null ? Long.valueOf(authorId) : null);
+        book.setAuthor(text(record, columns, "author"));
+        // Nhiều ảnh trong một ô, phân tách bằng |
+        String images = text(record, columns, "images");
+        if (images != null) {
+            List<String> urls = new ArrayList<>();
+            for (String url : images.split("\\|")) {
+                if (!url.trim().isEmpty()) {
+                    urls.add(url.trim());
+                }
+            }
+            book.setImages(urls);
+        }
+        return book;
+    }
+
+    private static String text(List<String> record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Đọc một bản ghi CSV theo RFC 4180 (ô trong nháy kép có thể chứa dấu phẩy, nháy kép "" và xuống dòng)
+    private static List<String> readCsvRecord(Reader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private void checkRowLimit(int rows) {
+        if (rows > maxRows) {
+            throw new IllegalArgumentException("File vượt quá số dòng cho phép: " + maxRows);
+        }
+    }
+
+    // ===== Kiểm tra và tra cứu theo tập hợp =====
+
+    private List<Row> validate(List<Row> rows, ImportResult result) {
+        List<Row> valid = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Set<ConstraintViolation<BookDTO>> violations = validator.validate(row.book);
+            if (violations.isEmpty()) {
+                valid.add(row);
+            } else {
+                List<String> messages = new ArrayList<>();
+                for (ConstraintViolation<BookDTO> violation : violations) {
+                    messages.add(violation.getMessage());
+                }
+                result.addError(row.number, row.book, String.join("; ", messages));
+            }
+        }
+        return valid;
+    }
+
+    // Bảng thể loại nhỏ: nạp id và tên một lần, tra cứu trong bộ nhớ
+    private List<Row> resolveCategories(List<Row> rows, ImportResult result) {
+        Map<Long, String> namesById = new HashMap<>();
+        Map<String, Long> idsByName = new HashMap<>();
+        for (Object[] category : categoryRepository.findAllIdAndName()) {
+            namesById.put((Long) category[0], (String) category[1]);
+            idsByName.put(TextAnalyzer.fold((String) category[1]), (Long) category[0]);
+        }
+
+        List<Row> valid = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Long categoryId = row.book.getCategoryId();
+            String categoryName = row.book.getCategoryName();
+            if (categoryId != null) {
+                if (!namesById.containsKey(categoryId)) {
+                    result.addError(row.number, row.book, "Không tìm thấy thể loại với ID: " + categoryId);
+                    continue;
+                }
+            } else if (categoryName != null) {
+                categoryId = idsByName.get(TextAnalyzer.fold(categoryName));
+                if (categoryId == null) {
+                    result.addError(row.number, row.book, "Không tìm thấy thể loại: " + categoryName);
+                    continue;
+                }
+            }
+            row.categoryId = categoryId;
+            row.categoryName = categoryId != null ? namesById.get(categoryId) : null;
+            valid.add(row);
+        }
+        return valid;
+    }
+
+    // Tác giả theo id hoặc tên: tra cứu bằng query IN, tác giả chưa có thì tạo chung trong một transaction
+    private List<Row> resolveAuthors(List<Row> rows, ImportResult result, Set<Long> createdAuthorIds) {
+        Set<Long> ids = new HashSet<>();
+        Map<String, String> namesByKey = new LinkedHashMap<>();
+        for (Row row : rows) {
+            if (row.book.getAuthorId() != null) {
+                ids.add(row.book.getAuthorId());
+            } else if (row.book.getAuthor() != null && !row.book.getAuthor().trim().isEmpty()) {
+                namesByKey.putIfAbsent(TextAnalyzer.fold(row.book.getAuthor()), row.book.getAuthor().trim());
+            }
+        }
+
+        Map<Long, String> namesById = new HashMap<>();
+        for (List<Long> part : partition(ids)) {
+            for (Object[] author : authorRepository.findIdAndNameByIdIn(part)) {
+                namesById.put((Long) author[0], (String) author[1]);
+            }
+        }
+        // Key theo tên đã bỏ dấu/viết thường, khớp với collation không phân biệt dấu của MySQL
+        Map<String, Long> idsByKey = new HashMap<>();
+        for (List<String> part : partition(namesByKey.values())) {
+            for (Object[] author : authorRepository.findIdAndNameByNameIn(part)) {
+                idsByKey.put(TextAnalyzer.fold((String) author[1]), (Long) author[0]);
+                namesById.put((Long) author[0], (String) author[1]);
+            }
+        }
+
+        List<Author> missing = new ArrayList<>();
+        for (Map.Entry<String, String> entry : namesByKey.entrySet()) {
+            if (!idsByKey.containsKey(entry.getKey())) {
+                Author author = new Author();
+                author.setName(entry.getValue());
+                missing.add(author);
+            }
+        }
+        String createError = null;
+        if (!missing.isEmpty()) {
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    for (Author author : authorRepository.saveAll(missing)) {
+                        eventPublisher.publishEvent(AuthorChangedEvent.saved(author.getId(), author.getName()));
+                    }
+                });
+                for (Author author : missing) {
+                    createdAuthorIds.add(author.getId());
+                    idsByKey.put(TextAnalyzer.fold(author.getName()), author.getId());
+                    namesById.put(author.getId(), author.getName());
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to create {} authors during import", missing.size(), e);
+                createError = "Không thể tạo tác giả: " + e.getMessage();
+            }
+        }
+
+        List<Row> valid = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Long authorId = row.book.getAuthorId();
+            if (authorId != null) {
+                if (!namesById.containsKey(authorId)) {
+                    result.addError(row.number, row.book, "Không tìm thấy tác giả với ID: " + authorId);
+                    continue;
+                }
+            } else if (row.book.getAuthor() != null && !row.book.getAuthor().trim().isEmpty()) {
+                authorId = idsByKey.get(TextAnalyzer.fold(row.book.getAuthor()));
+                if (authorId == null) {
+                    result.addError(row.number, row.book, createError != null ? createError
+                        : "Không tìm thấy tác giả: " + row.book.getAuthor());
+                    continue;
+                }
+            }
+            row.authorId = authorId;
+            row.authorName = authorId != null ? namesById.get(authorId) : null;
+            valid.add(row);
+        }
+        return valid;
+    }
+
+    // Tác giả tạo mới trong lần import này nhưng không dòng sách nào tham chiếu được commit -> xóa để không bị mồ côi
+    private void removeUnusedAuthors(Set<Long> createdAuthorIds, Set<Long> usedAuthorIds) {
+        List<Long> unused = new ArrayList<>();
+        for (Long authorId : createdAuthorIds) {
+            if (!usedAuthorIds.contains(authorId)) {
+                unused.add(authorId);
+            }
+        }
+        if (unused.isEmpty()) {
+            return;
+        }
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                authorRepository.deleteAllById(unused);
+                for (Long authorId : unused) {
+                    eventPublisher.publishEvent(AuthorChangedEvent.deleted(authorId));
+                }
+            });
+        } catch (RuntimeException e) {
+            // Có thể đã có sách khác gắn vào tác giả mới trong lúc import: giữ lại tác giả
+            logger.warn("Failed to remove {} unused authors created during import: {}", unused.size(), e.getMessage());
+        }
+    }
+
+    // ISBN trùng với DB (query IN theo lô) hoặc trùng với dòng trước trong cùng file
+    private List<Row> rejectDuplicateIsbns(List<Row> rows, ImportResult result) {
+        Set<String> isbns = new HashSet<>();
+        for (Row row : rows) {
+            if (row.book.getIsbn() != null) {
+                isbns.add(row.book.getIsbn());
+            }
+        }
+        Set<String> existing = new HashSet<>();
+        for (List<String> part : partition(isbns)) {
+            existing.addAll(bookRepository.findExistingIsbns(part));
+        }
+
+        Set<String> seen = new HashSet<>();
+        List<Row> valid = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            String isbn = row.book.getIsbn();
+            if (isbn != null && existing.contains(isbn)) {
+                result.addError(row.number, row.book, "ISBN đã tồn tại: " + isbn);
+            } else if (isbn != null && !seen.add(isbn)) {
+                result.addError(row.number, row.book, "ISBN bị trùng trong file: " + isbn);
+            } else {
+                valid.add(row);
+            }
+        }
+        return valid;
+    }
+
+    private static <T> List<List<T>> partition(Collection<T> values) {
+        List<T> list = new ArrayList<>(values);
+        List<List<T>> parts = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += IN_LIST_SIZE) {
+            parts.add(list.subList(from, Math.min(from + IN_LIST_SIZE, list.size())));
+        }
+        return parts;
+    }
+
+    // ===== Ghi theo chunk =====
+
+    // Gọi trong transaction: một batch INSERT cho sách (lấy id sinh ra), một batch INSERT cho ảnh
+    private void insertChunk(List<Row> chunk) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            con -> con.prepareStatement(INSERT_BOOK_SQL, Statement.RETURN_GENERATED_KEYS),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Row row = chunk.get(i);
+                    BookDTO book = row.book;
+                    ps.setString(1, book.getTitle());
+                    ps.setString(2, book.getDescription());
+                    ps.setString(3, book.getIsbn());
+                    ps.setBigDecimal(4, book.getPrice());
+                    ps.setInt(5, book.getStockQuantity() != null ? book.getStockQuantity() : 0);
+                    ps.setString(6, row.imageUrl());
+                    setNullable(ps, 7, book.getPages(), Types.INTEGER);
+                    ps.setString(8, row.language());
+                    setNullable(ps, 9, row.categoryId, Types.BIGINT);
+                    setNullable(ps, 10, row.authorId, Types.BIGINT);
+                    ps.setTimestamp(11, now);
+                    ps.setTimestamp(12, now);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return chunk.size();
+                }
+            },
+            keys);
+
+        List<Map<String, Object>> generated = keys.getKeyList();
+        if (generated.size() != chunk.size()) {
+            throw new IllegalStateException("Số id sinh ra không khớp số sách đã ghi");
+        }
+        List<Object[]> images = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Row row = chunk.get(i);
+            row.id = ((Number) generated.get(i).values().iterator().next()).longValue();
+            if (row.book.getImages() != null) {
+                for (String url : row.book.getImages()) {
+                    images.add(new Object[]{row.id, url});
+                }
+            }
+        }
+        if (!images.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_IMAGE_SQL, images);
+        }
+
+        // Các index in-memory/cache cập nhật sau khi chunk commit
+        LocalDateTime createdAt = now.toLocalDateTime();
+        for (Row row : chunk) {
+            eventPublisher.publishEvent(BookChangedEvent.created(row.toSummary(createdAt)));
+        }
+    }
+
+    // Mỗi dòng một transaction riêng
+    private void insertRowByRow(List<Row> chunk, ImportResult result, Set<Long> usedAuthorIds) {
+        for (Row row : chunk) {
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> insertChunk(List.of(row)));
+                result.importedRows++;
+                usedAuthorIds.add(row.authorId);
+            } catch (RuntimeException e) {
+                result.addError(row.number, row.book, "Lỗi ghi dữ liệu: " + rootMessage(e));
+            }
+        }
+    }
+
+    // Lỗi gốc từ driver (vd. vi phạm ràng buộc) dễ hiểu hơn thông báo bọc của Spring
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
+    private static void setNullable(PreparedStatement ps, int index, Number value, int sqlType) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType);
+        } else {
+            ps.setObject(index, value, sqlType);
+        }
+    }
+
+    // Dừng đọc khi vượt quá số byte cho phép (body không có Content-Length vẫn bị giới hạn)
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long count;
+
+        LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) {
+            count += n;
+            if (count > maxBytes) {
+                throw new IllegalArgumentException("File import vượt quá dung lượng cho phép (" + maxBytes / (1024 * 1024) + "MB)");
+            }
+        }
+    }
+
+    // Một dòng dữ liệu cùng kết quả tra cứu
+    private static class Row {
+        private final int number;
+        private final BookDTO book;
+        private Long categoryId;
+        private String categoryName;
+        private Long authorId;
+        private String authorName;
+        private Long id;
+
+        Row(int number, BookDTO book) {
+            this.number = number;
+            this.book = book;
+        }
+
+        // Giống BookService: ảnh đầu tiên là ảnh bìa
+        String imageUrl() {
+            return book.getImages() != null && !book.getImages().isEmpty() ? book.getImages().get(0) : null;
+        }
+
+        String language() {
+            return book.getLanguage() != null ? book.getLanguage() : "Vietnamese";
+        }
+
+        BookSummaryDTO toSummary(LocalDateTime createdAt) {
+            BookSummaryDTO dto = new BookSummaryDTO();
+            dto.setId(id);
+            dto.setTitle(book.getTitle());
+            dto.setDescription(book.getDescription());
+            dto.setIsbn(book.getIsbn());
+            dto.setPrice(book.getPrice());
+            int stock = book.getStockQuantity() != null ? book.getStockQuantity() : 0;
+            dto.setStockQuantity(stock);
+            dto.setInStock(stock > 0);
+            dto.setImageUrl(imageUrl());
+            dto.setImages(book.getImages() != null ? new ArrayList<>(book.getImages()) : new ArrayList<>());
+            dto.setPages(book.getPages());
+            dto.setLanguage(language());
+            dto.setCategoryId(categoryId);
+            dto.setCategoryName(categoryName);
+            dto.setAuthorId(authorId);
+            dto.setAuthorName(authorName);
+            dto.setCreatedAt(createdAt);
+            dto.setUpdatedAt(createdAt);
+            return dto;
+        }
+    }
+
+    // Lỗi của một dòng (số dòng tính từ 1, không kể header)
+    public static class RowError {
+        private final int row;
+        private final String isbn;
+        private final String title;
+        private final String message;
+
+        public RowError(int row, String isbn, String title, String message) {
+            this.row = row;
+            this.isbn = isbn;
+            this.title = title;
+            this.message = message;
+        }
+
+        public int getRow() { return row; }
+        public String getIsbn() { return isbn; }
+        public String getTitle() { return title; }
+        public String getMessage() { return message; }
+    }
+
+    // Kết quả import
+    public static class ImportResult {
+        private int totalRows;
+        private int importedRows;
+        private int failedRows;
+        private long elapsedMs;
+        private final List<RowError> errors = new ArrayList<>();
+
+        void addError(int row, BookDTO book, String message) {
+            failedRows++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(row, book != null ? book.getIsbn() : null,
+                    book != null ? book.getTitle() : null, message));
+            }
+        }
+
+        public int getTotalRows() { return totalRows; }
+        public int getImportedRows() { return importedRows; }
+        public int getFailedRows() { return failedRows; }
+        public long getElapsedMs() { return elapsedMs; }
+        public List<RowError> getErrors() { return errors; }
+
+        public double getRowsPerSecond() {
+            return elapsedMs == 0 ? importedRows : importedRows * 1000.0 / elapsedMs;
+        }
+    }
+}
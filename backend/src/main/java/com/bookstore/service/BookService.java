@@ -1,23 +1,48 @@
 package com.bookstore.service;
 
+import com.bookstore.cache.BookDetailCache;
+import com.bookstore.dto.BookCursor;
 import com.bookstore.dto.BookDTO;
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.dto.CursorPageDTO;
 import com.bookstore.entity.Author;
 import com.bookstore.entity.Book;
 import com.bookstore.entity.Category;
+import com.bookstore.event.AuthorChangedEvent;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.ranking.CoPurchaseMatrix;
+import com.bookstore.ranking.SalesRanking;
 import com.bookstore.repository.AuthorRepository;
 import com.bookstore.repository.BookRepository;
+import com.bookstore.repository.BookSpecifications;
 import com.bookstore.repository.CategoryRepository;
+import com.bookstore.search.BookSearchIndex;
+import com.bookstore.search.FacetIndex;
+import com.bookstore.search.FuzzyIndex;
+import com.bookstore.search.PriceIndex;
+import com.bookstore.search.RandomBookSampler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -32,6 +57,39 @@ public class BookService {
     @Autowired
     private AuthorRepository authorRepository;
     
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    
+    @Autowired
+    private BookDetailCache bookDetailCache;
+    
+    @Autowired
+    private SalesRanking salesRanking;
+    
+    @Autowired
+    private RandomBookSampler randomBookSampler;
+
+    @Autowired
+    private PriceIndex priceIndex;
+
+    @Autowired
+    private FuzzyIndex fuzzyIndex;
+
+    @Value("${app.pagination.max-size:1000}")
+    private int maxPageSize;
+
+    @Autowired
+    private CoPurchaseMatrix coPurchaseMatrix;
+    
+    @Autowired
+    private InventoryService inventoryService;
+    
+    @Autowired
+    private FacetIndex facetIndex;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     // Lấy tất cả sách
     public List<Book> getAllBooks() {
         return bookRepository.findAll();
@@ -47,23 +105,82 @@ public class BookService {
         return bookRepository.findAll(pageable);
     }
     
-    // Tìm kiếm sách với filters - đơn giản hóa
+    // Tìm kiếm sách với filters - filter, sort và LIMIT/OFFSET được đẩy xuống DB, chỉ giữ một trang trong bộ nhớ
+    @Transactional(readOnly = true)
     public Page<Book> searchBooks(String title, Long categoryId, Long authorId, 
                                  BigDecimal minPrice, BigDecimal maxPrice, 
                                  int page, int size, String sortBy, String sortDir) {
+        if (!BookSpecifications.SORTABLE_FIELDS.contains(sortBy)) {
+            throw new IllegalArgumentException("Không hỗ trợ sắp xếp theo trường: " + sortBy);
+        }
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                    Sort.by(sortBy).descending() : 
                    Sort.by(sortBy).ascending();
         
         Pageable pageable = PageRequest.of(page, size, sort);
         
-        // Đơn giản hóa - chỉ search theo title
-        if (title != null && !title.trim().isEmpty()) {
-            List<Book> books = bookRepository.findByTitleContainingIgnoreCaseOrDescriptionContainingIgnoreCase(title, title);
-            return (Page<Book>) books; // Simplified for now
+        Specification<Book> filter = Specification.where(BookSpecifications.keywordContains(title))
+            .and(BookSpecifications.hasCategory(categoryId))
+            .and(BookSpecifications.hasAuthor(authorId))
+            .and(BookSpecifications.priceBetween(minPrice, maxPrice));
+        return bookRepository.findAllWithDetails(filter, pageable);
+    }
+    
+    // Kiểm tra kích thước trang: phải lớn hơn 0, vượt giới hạn thì lấy giới hạn
+    public int checkPageSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Kích thước trang phải lớn hơn 0");
         }
-        
-        return bookRepository.findAll(pageable);
+        return Math.min(size, maxPageSize);
+    }
+
+    // Số trang (offset pagination) không được âm
+    public void checkPage(int page) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Số trang không được âm");
+        }
+    }
+
+    // Keyset pagination: không OFFSET, chỉ COUNT khi includeTotal = true
+    @Transactional(readOnly = true)
+    public CursorPageDTO<BookSummaryDTO> getBooksAfter(Specification<Book> filter, BookCursor cursor, int size, boolean includeTotal) {
+        // Lấy dư 1 phần tử để biết còn trang sau hay không
+        List<Book> books = bookRepository.findAfterCursor(cursor, filter, size + 1);
+        boolean hasNext = books.size() > size;
+        if (hasNext) {
+            books = books.subList(0, size);
+        }
+
+        String nextCursor = hasNext ? cursor.after(books.get(books.size() - 1)).encode() : null;
+        Long total = includeTotal ? bookRepository.count(filter) : null;
+
+        return new CursorPageDTO<>(toSummaries(books), nextCursor, hasNext, total);
+    }
+
+    // Chuyển sang DTO, images của cả danh sách nạp bằng một query IN (không chạm collection lazy của từng entity)
+    private List<BookSummaryDTO> toSummaries(List<Book> books) {
+        if (books.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = books.stream().map(Book::getId).collect(Collectors.toList());
+        Map<Long, List<String>> imagesByBookId = new HashMap<>();
+        for (Object[] row : bookRepository.findImagesByBookIdIn(ids)) {
+            imagesByBookId.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((String) row[1]);
+        }
+        return books.stream()
+            .map(book -> BookSummaryDTO.fromBookWithDetails(book, imagesByBookId.get(book.getId())))
+            .collect(Collectors.toList());
+    }
+    
+    // Trang danh sách đọc qua projection: không hydrate entity, images của cả trang nạp bằng một query IN
+    @Transactional(readOnly = true)
+    public Page<BookSummaryDTO> getBookSummaries(Specification<Book> filter, Pageable pageable) {
+        for (Sort.Order order : pageable.getSort()) {
+            if (!BookSpecifications.SORTABLE_FIELDS.contains(order.getProperty())) {
+                throw new IllegalArgumentException("Không hỗ trợ sắp xếp theo trường: " + order.getProperty());
+            }
+        }
+        return bookRepository.findSummaries(filter, pageable);
     }
     
     // Lấy sách theo category - đơn giản hóa
@@ -76,9 +193,26 @@ public class BookService {
         return bookRepository.findByAuthorId(authorId);
     }
     
-    // Lấy sách theo khoảng giá
-    public List<Book> getBooksByPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
-        return bookRepository.findByPriceBetween(minPrice, maxPrice);
+    // Lấy sách theo khoảng giá: PriceIndex chọn id của trang, chỉ một query IN cho các sách trong trang
+    @Transactional(readOnly = true)
+    public Page<BookSummaryDTO> getBooksByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, boolean descending,
+                                                     int page, int size) {
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("Giá tối thiểu không được lớn hơn giá tối đa");
+        }
+        // Giới hạn kích thước trang trước khi lấy id: trang là một query IN nạp đủ entity
+        checkPage(page);
+        size = checkPageSize(size);
+        PriceIndex.RangePage range = priceIndex.range(minPrice, maxPrice, descending, page, size);
+        List<BookSummaryDTO> content = getBooksByIdsInOrder(range.getBookIds()).stream()
+            .map(BookSummaryDTO::fromBookWithDetails)
+            .collect(Collectors.toList());
+        return new PageImpl<>(content, PageRequest.of(page, size), range.getTotalElements());
+    }
+
+    // Số sách theo từng khoảng giá cho thanh trượt giá, tính hoàn toàn trong bộ nhớ
+    public PriceIndex.Histogram getPriceHistogram(BigDecimal minPrice, BigDecimal maxPrice, int buckets) {
+        return priceIndex.histogram(minPrice, maxPrice, buckets);
     }
     
     // Lấy sách còn hàng
@@ -86,17 +220,57 @@ public class BookService {
         return bookRepository.findByStockQuantityGreaterThan(0);
     }
     
-    // Tìm kiếm sách theo keyword
-    public List<Book> searchBooksByKeyword(String keyword) {
-        return bookRepository.findByTitleContainingIgnoreCaseOrDescriptionContainingIgnoreCase(keyword, keyword);
+    // Tìm kiếm sách theo keyword - dùng inverted index in-memory, không query DB
+    public Page<BookSummaryDTO> searchBooksByKeyword(String keyword, Long categoryId, int page, int size) {
+        return bookSearchIndex.search(keyword, categoryId, page, size);
+    }
+    
+    // Tìm kiếm chịu lỗi gõ/thiếu dấu trên tên sách và tác giả - FuzzyIndex in-memory, không query DB
+    public Page<BookSummaryDTO> fuzzySearchBooks(String keyword, Long categoryId, int page, int size) {
+        return fuzzyIndex.search(keyword, categoryId, page, size);
+    }
+    
+    // Tìm kiếm có facet: lọc + đếm trên bitmap in-memory, keyword (nếu có) lấy từ inverted index
+    public FacetIndex.FacetResult facetedSearch(String keyword, Map<FacetIndex.Facet, Set<String>> selections,
+                                                String sort, int page, int size) {
+        boolean hasKeyword = keyword != null && !keyword.trim().isEmpty();
+        List<Long> rankedIds = hasKeyword ? bookSearchIndex.matchingBookIds(keyword) : null;
+        return facetIndex.search(selections, rankedIds, facetSortComparator(sort, hasKeyword), page, size);
+    }
+    
+    // null = giữ thứ tự độ liên quan của kết quả tìm kiếm
+    private Comparator<BookSummaryDTO> facetSortComparator(String sort, boolean hasKeyword) {
+        if (sort == null || sort.isEmpty()) {
+            return hasKeyword ? null : Comparator.comparing(BookSummaryDTO::getId, Comparator.reverseOrder());
+        }
+        switch (sort) {
+            case "relevance":
+                return null;
+            case "newest":
+                return Comparator.comparing(BookSummaryDTO::getId, Comparator.reverseOrder());
+            case "price_asc":
+                return Comparator.comparing(BookSummaryDTO::getPrice).thenComparing(BookSummaryDTO::getId);
+            case "price_desc":
+                return Comparator.comparing(BookSummaryDTO::getPrice, Comparator.reverseOrder()).thenComparing(BookSummaryDTO::getId);
+            case "title":
+                return Comparator.comparing(BookSummaryDTO::getTitle).thenComparing(BookSummaryDTO::getId);
+            default:
+                throw new IllegalArgumentException("Không hỗ trợ sắp xếp: " + sort);
+        }
     }
     
     // Lấy sách theo ID
     public Book getBookById(Long id) {
-        return bookRepository.findByIdWithCategoryAndAuthor(id)
+        return bookRepository.findWithDetailsById(id)
             .orElseThrow(() -> new RuntimeException("Không tìm thấy sách với ID: " + id));
     }
     
+    // Lấy BookSummaryDTO qua cache, cache hit không mở transaction/connection
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public BookSummaryDTO getBookSummaryById(Long id) {
+        return bookDetailCache.get(id, bookId -> BookSummaryDTO.fromBookWithDetails(getBookById(bookId)));
+    }
+    
     // Lấy sách theo ISBN
     public Book getBookByIsbn(String isbn) {
         return bookRepository.findByIsbn(isbn)
@@ -113,7 +287,9 @@ public class BookService {
         Book book = new Book();
         mapDTOToEntity(bookDTO, book);
         
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        publishBookSaved(savedBook, true);
+        return savedBook;
     }
     
     // Cập nhật sách
@@ -129,7 +305,9 @@ public class BookService {
         
         mapDTOToEntity(bookDTO, book);
         
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        publishBookSaved(savedBook, false);
+        return savedBook;
     }
     
     // Xóa sách
@@ -138,6 +316,7 @@ public class BookService {
             throw new RuntimeException("Không tìm thấy sách với ID: " + id);
         }
         bookRepository.deleteById(id);
+        eventPublisher.publishEvent(BookChangedEvent.deleted(id));
     }
     
     // Lấy sách mới nhất - sử dụng Page methods
@@ -146,17 +325,51 @@ public class BookService {
         return bookRepository.findAllByOrderByCreatedAtDescWithCategoryAndAuthor(pageable).getContent();
     }
     
-    // Lấy sách bán chạy - sử dụng Page methods  
-    public List<Book> getBestSellingBooks(int limit) {
-        Pageable pageable = PageRequest.of(0, limit);
-        return bookRepository.findAllByOrderByStockQuantityDescWithCategoryAndAuthor(pageable).getContent();
+    // Lấy sách bán chạy theo số lượng đã bán (SalesRanking in-memory), chỉ query các sách trong top
+    public List<Book> getBestSellingBooks(int limit, SalesRanking.Window window) {
+        List<Long> ids = salesRanking.top(window, limit).stream()
+            .map(SalesRanking.BookSales::getBookId)
+            .collect(Collectors.toList());
+        return getBooksByIdsInOrder(ids);
+    }
+    
+    // Lấy nhiều sách theo ID (entity graph kèm images), giữ nguyên thứ tự ids, bỏ qua ID không tồn tại
+    public List<Book> getBooksByIdsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Book> booksById = new HashMap<>();
+        for (Book book : bookRepository.findAllWithDetailsByIdIn(ids)) {
+            booksById.put(book.getId(), book);
+        }
+        List<Book> books = new ArrayList<>();
+        for (Long id : ids) {
+            Book book = booksById.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
     }
     
-    // Lấy sách ngẫu nhiên
+    // "Khách hàng cũng mua": id lấy từ CoPurchaseMatrix in-memory, thông tin sách qua BookDetailCache,
+    // sách chưa có trong cache được nạp chung một query IN
+    @Transactional(readOnly = true)
+    public List<BookSummaryDTO> getRelatedBooks(Long bookId, int limit) {
+        List<Long> ids = coPurchaseMatrix.related(bookId, limit);
+        return bookDetailCache.getAll(ids, missing -> getBooksByIdsInOrder(missing).stream()
+            .map(BookSummaryDTO::fromBookWithDetails)
+            .collect(Collectors.toList()));
+    }
+    
+    // Lấy sách ngẫu nhiên còn hàng - chọn id từ RandomBookSampler, chỉ một query IN cho k sách
+    @Transactional(readOnly = true)
     public List<Book> getRandomBooks(int limit) {
-        // Simplified implementation
-        Pageable pageable = PageRequest.of(0, limit);
-        return bookRepository.findAll(pageable).getContent();
+        List<Book> books = getBooksByIdsInOrder(randomBookSampler.sample(limit));
+        // Sampler cập nhật sau commit nên có thể lệch một chút với DB, lọc lại cho chắc
+        return books.stream()
+            .filter(Book::isInStock)
+            .collect(Collectors.toList());
     }
     
     // Lấy sách theo ngôn ngữ
@@ -168,21 +381,21 @@ public class BookService {
     public Book updateStock(Long bookId, int quantity) {
         Book book = getBookById(bookId);
         book.setStockQuantity(quantity);
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        publishBookSaved(savedBook, false);
+        return savedBook;
     }
     
-    // Giảm stock khi có đơn hàng
+    // Giảm stock khi có đơn hàng (trừ có điều kiện trong DB, xem InventoryService)
     public void reduceStock(Long bookId, int quantity) {
-        Book book = getBookById(bookId);
-        book.reduceStock(quantity);
-        bookRepository.save(book);
+        InventoryService.StockChange stockChange = inventoryService.reserve(Map.of(bookId, quantity));
+        inventoryService.publishStockChanged(stockChange, null);
     }
     
     // Tăng stock khi hủy đơn hàng
     public void increaseStock(Long bookId, int quantity) {
-        Book book = getBookById(bookId);
-        book.increaseStock(quantity);
-        bookRepository.save(book);
+        InventoryService.StockChange stockChange = inventoryService.release(Map.of(bookId, quantity));
+        inventoryService.publishStockChanged(stockChange, null);
     }
     
     // Kiểm tra sách có sẵn với số lượng yêu cầu
@@ -204,6 +417,14 @@ public class BookService {
         return bookRepository.findByStockQuantityGreaterThan(0).size(); // Simplified
     }
     
+    // Phát sự kiện để các index in-memory cập nhật snapshot sau khi commit. Flush trước để dòng sách đã bị khóa
+    // khi event nhận version (xem BookChangedEvent)
+    private void publishBookSaved(Book book, boolean created) {
+        bookRepository.flush();
+        BookSummaryDTO snapshot = BookSummaryDTO.fromBookWithDetails(book);
+        eventPublisher.publishEvent(created ? BookChangedEvent.created(snapshot) : BookChangedEvent.updated(snapshot));
+    }
+    
     // Helper method để map DTO sang Entity
     private void mapDTOToEntity(BookDTO bookDTO, Book book) {
         book.setTitle(bookDTO.getTitle());
@@ -242,6 +463,7 @@ public class BookService {
                 author.setName(bookDTO.getAuthor().trim());
                 author.setBiography("Thông tin tác giả sẽ được cập nhật sau.");
                 author = authorRepository.save(author);
+                eventPublisher.publishEvent(AuthorChangedEvent.saved(author.getId(), author.getName()));
             }
             book.setAuthor(author);
         }
@@ -259,38 +481,17 @@ public class BookService {
             BigDecimal maxPrice, 
             Boolean inStock) {
         
-        // Sử dụng JOIN FETCH methods để tránh lazy loading
-        if (title != null && !title.trim().isEmpty()) {
-            return bookRepository.findByTitleContainingIgnoreCaseWithCategoryAndAuthor(title, pageable);
-        }
-        
-        if (categoryId != null) {
-            return bookRepository.findByCategoryIdWithCategoryAndAuthor(categoryId, pageable);
-        }
-        
-        if (inStock != null && inStock) {
-            return bookRepository.findByStockQuantityGreaterThanWithCategoryAndAuthor(0, pageable);
-        }
-        
-        // Default case - return all books với JOIN FETCH
-        return bookRepository.findAllWithCategoryAndAuthor(pageable);
+        // Tất cả điều kiện được kết hợp trong một câu SELECT với JOIN FETCH category, author
+        return bookRepository.findAllWithDetails(
+            BookSpecifications.matching(title, author, categoryId, minPrice, maxPrice, inStock), pageable);
     }
     
     // Save book method cho admin
     public Book saveBook(Book book) {
-        return bookRepository.save(book);
-    }
-    
-    // Delete bulk books
-    public int deleteBulkBooks(List<Long> ids) {
-        int count = 0;
-        for (Long id : ids) {
-            if (bookRepository.existsById(id)) {
-                bookRepository.deleteById(id);
-                count++;
-            }
-        }
-        return count;
+        boolean created = book.getId() == null;
+        Book savedBook = bookRepository.save(book);
+        publishBookSaved(savedBook, created);
+        return savedBook;
     }
     
     // Get book by ID với null check thay vì exception
@@ -0,0 +1,235 @@
+package com.bookstore.service;
+
+import com.bookstore.event.AuthorChangedEvent;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.repository.AuthorRepository;
+import com.bookstore.repository.BookRepository;
+import com.bookstore.repository.OrderItemRepository;
+import com.bookstore.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+// Thao tác hàng loạt cho admin: kiểm tra và xóa/cập nhật bằng vài câu lệnh theo tập hợp thay vì từng ID,
+// danh sách IN được chia lô (app.bulk.in-list-size). Mỗi thao tác chạy trong một transaction và trả về kết quả từng ID.
+@Service
+@Transactional
+public class BulkOperationService {
+
+    public enum Status {
+        DELETED, UPDATED, NOT_FOUND, IN_USE
+    }
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.bulk.in-list-size:1000}")
+    private int inListSize;
+
+    @Value("${app.bulk.max-ids:10000}")
+    private int maxIds;
+
+    // Xóa nhiều sách; sách đã có trong đơn hàng được giữ lại (IN_USE)
+    public BulkResult deleteBooks(Collection<Long> ids) {
+        Set<Long> requested = normalize(ids);
+        Set<Long> existing = collect(requested, bookRepository::findExistingIds);
+        Set<Long> ordered = collect(existing, orderItemRepository::findOrderedBookIds);
+
+        List<Long> deletable = new ArrayList<>();
+        BulkResult result = new BulkResult();
+        for (Long id : requested) {
+            if (!existing.contains(id)) {
+                result.add(id, Status.NOT_FOUND, "Không tìm thấy sách với ID: " + id);
+            } else if (ordered.contains(id)) {
+                result.add(id, Status.IN_USE, "Sách đã có trong đơn hàng, không thể xóa");
+            } else {
+                deletable.add(id);
+                result.add(id, Status.DELETED, null);
+            }
+        }
+
+        for (List<Long> part : partition(deletable)) {
+            bookRepository.deleteImagesByBookIdIn(part);
+            bookRepository.deleteByIdIn(part);
+        }
+        for (Long id : deletable) {
+            eventPublisher.publishEvent(BookChangedEvent.deleted(id));
+        }
+        return result;
+    }
+
+    // Xóa nhiều tác giả; tác giả còn sách được giữ lại (IN_USE)
+    public BulkResult deleteAuthors(Collection<Long> ids) {
+        Set<Long> requested = normalize(ids);
+        Set<Long> existing = collect(requested, part -> {
+            List<Long> found = new ArrayList<>();
+            for (Object[] author : authorRepository.findIdAndNameByIdIn(part)) {
+                found.add((Long) author[0]);
+            }
+            return found;
+        });
+        Set<Long> withBooks = collect(existing, authorRepository::findIdsWithBooks);
+
+        List<Long> deletable = new ArrayList<>();
+        BulkResult result = new BulkResult();
+        for (Long id : requested) {
+            if (!existing.contains(id)) {
+                result.add(id, Status.NOT_FOUND, "Không tìm thấy tác giả với ID: " + id);
+            } else if (withBooks.contains(id)) {
+                result.add(id, Status.IN_USE, "Tác giả đã có sách, hãy xóa hoặc chuyển sách trước");
+            } else {
+                deletable.add(id);
+                result.add(id, Status.DELETED, null);
+            }
+        }
+
+        for (List<Long> part : partition(deletable)) {
+            authorRepository.deleteByIdIn(part);
+        }
+        for (Long id : deletable) {
+            eventPublisher.publishEvent(AuthorChangedEvent.deleted(id));
+        }
+        return result;
+    }
+
+    // Xóa nhiều user; user đã có đơn hàng được giữ lại (IN_USE), giống deleteUser
+    public BulkResult deleteUsers(Collection<Long> ids) {
+        Set<Long> requested = normalize(ids);
+        Set<Long> existing = collect(requested, userRepository::findExistingIds);
+        Set<Long> withOrders = collect(existing, userRepository::findIdsWithOrders);
+
+        List<Long> deletable = new ArrayList<>();
+        BulkResult result = new BulkResult();
+        for (Long id : requested) {
+            if (!existing.contains(id)) {
+                result.add(id, Status.NOT_FOUND, "Không tìm thấy user với ID: " + id);
+            } else if (withOrders.contains(id)) {
+                result.add(id, Status.IN_USE, "User đã có đơn hàng, không thể xóa");
+            } else {
+                deletable.add(id);
+                result.add(id, Status.DELETED, null);
+            }
+        }
+
+        for (List<Long> part : partition(deletable)) {
+            userRepository.deleteByIdIn(part);
+        }
+        return result;
+    }
+
+    // Bật/tắt nhiều tài khoản
+    public BulkResult setUsersEnabled(Collection<Long> ids, boolean enabled) {
+        Set<Long> requested = normalize(ids);
+        Set<Long> existing = collect(requested, userRepository::findExistingIds);
+
+        List<Long> updatable = new ArrayList<>();
+        BulkResult result = new BulkResult();
+        for (Long id : requested) {
+            if (!existing.contains(id)) {
+                result.add(id, Status.NOT_FOUND, "Không tìm thấy user với ID: " + id);
+            } else {
+                updatable.add(id);
+                result.add(id, Status.UPDATED, null);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (List<Long> part : partition(updatable)) {
+            userRepository.updateEnabledByIdIn(part, enabled, now);
+        }
+        return result;
+    }
+
+    // Bỏ null/trùng, giữ thứ tự gửi lên
+    private Set<Long> normalize(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách ID không được để trống");
+        }
+        Set<Long> requested = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (id != null) {
+                requested.add(id);
+            }
+        }
+        if (requested.size() > maxIds) {
+            throw new IllegalArgumentException("Tối đa " + maxIds + " ID cho mỗi thao tác hàng loạt");
+        }
+        return requested;
+    }
+
+    // Chạy một query IN theo từng lô và gộp kết quả
+    private Set<Long> collect(Collection<Long> ids, Function<List<Long>, List<Long>> query) {
+        Set<Long> found = new HashSet<>();
+        for (List<Long> part : partition(ids)) {
+            found.addAll(query.apply(part));
+        }
+        return found;
+    }
+
+    private List<List<Long>> partition(Collection<Long> ids) {
+        List<Long> list = new ArrayList<>(ids);
+        List<List<Long>> parts = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += inListSize) {
+            parts.add(list.subList(from, Math.min(from + inListSize, list.size())));
+        }
+        return parts;
+    }
+
+    // Kết quả một ID
+    public static class ItemResult {
+        private final Long id;
+        private final Status status;
+        private final String message;
+
+        public ItemResult(Long id, Status status, String message) {
+            this.id = id;
+            this.status = status;
+            this.message = message;
+        }
+
+        public Long getId() { return id; }
+        public Status getStatus() { return status; }
+        public String getMessage() { return message; }
+    }
+
+    // Kết quả cả thao tác, theo thứ tự ID gửi lên
+    public static class BulkResult {
+        private final List<ItemResult> results = new ArrayList<>();
+        private int succeeded;
+
+        void add(Long id, Status status, String message) {
+            results.add(new ItemResult(id, status, message));
+            if (status == Status.DELETED || status == Status.UPDATED) {
+                succeeded++;
+            }
+        }
+
+        public int getRequested() { return results.size(); }
+        public int getSucceeded() { return succeeded; }
+        public int getFailed() { return results.size() - succeeded; }
+        public List<ItemResult> getResults() { return results; }
+    }
+}
@@ -0,0 +1,163 @@
+package com.bookstore.service;
+
+import com.bookstore.repository.BookRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Xuất catalog cho đối tác: đọc bằng cursor và ghi từng dòng thẳng ra output stream, bộ nhớ không phụ thuộc số sách
+@Service
+public class CatalogExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogExportService.class);
+
+    // Flush định kỳ để client nhận dữ liệu dần thay vì chờ buffer đầy
+    private static final int FLUSH_EVERY_ROWS = 500;
+
+    // Thứ tự cột khớp với BookRepository.streamForExport
+    private static final String[] COLUMNS = {
+        "id", "isbn", "title", "description", "price", "stockQuantity", "imageUrl", "pages", "language",
+        "categoryId", "categoryName", "authorId", "authorName", "createdAt", "updatedAt"
+    };
+
+    public enum Format {
+        NDJSON("ndjson", "application/x-ndjson"),
+        CSV("csv", "text/csv; charset=UTF-8");
+
+        private final String code;
+        private final String contentType;
+
+        Format(String code, String contentType) {
+            this.code = code;
+            this.contentType = contentType;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Format fromCode(String code) {
+            for (Format format : values()) {
+                if (format.code.equalsIgnoreCase(code)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Định dạng export không hợp lệ: " + code + " (ndjson, csv)");
+        }
+    }
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Ghi các sách có updatedAt >= updatedSince (null = toàn bộ), trả về số dòng đã ghi
+    @Transactional(readOnly = true)
+    public long export(Format format, LocalDateTime updatedSince, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        long rows = 0;
+        try (Stream<Object[]> stream = bookRepository.streamForExport(updatedSince)) {
+            Iterator<Object[]> it = stream.iterator();
+            if (format == Format.NDJSON) {
+                rows = writeNdjson(it, out);
+            } else {
+                rows = writeCsv(it, out);
+            }
+        }
+        logger.info("Exported {} books as {} in {} ms (updatedSince={})",
+            rows, format.getCode(), System.currentTimeMillis() - start, updatedSince);
+        return rows;
+    }
+
+    private long writeNdjson(Iterator<Object[]> it, OutputStream out) throws IOException {
+        long rows = 0;
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        // Không đóng output stream của response, chỉ flush
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        while (it.hasNext()) {
+            Object[] row = it.next();
+            generator.writeStartObject();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                generator.writeFieldName(COLUMNS[i]);
+                writeJsonValue(generator, row[i]);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                generator.flush();
+            }
+        }
+        generator.flush();
+        return rows;
+    }
+
+    private void writeJsonValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Integer) {
+            generator.writeNumber((Integer) value);
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    private long writeCsv(Iterator<Object[]> it, OutputStream out) throws IOException {
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // BOM để Excel nhận đúng UTF-8 (tên sách tiếng Việt)
+        writer.write('\uFEFF');
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        while (it.hasNext()) {
+            Object[] row = it.next();
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(csvValue(row[i]));
+            }
+            writer.write("\r\n");
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return rows;
+    }
+
+    // RFC 4180: bọc trong dấu nháy kép nếu có dấu phẩy, nháy kép hoặc xuống dòng
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
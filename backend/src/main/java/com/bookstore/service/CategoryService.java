@@ -1,12 +1,18 @@
 package com.bookstore.service;
 
+import com.bookstore.cache.CategorySummaryCache;
+import com.bookstore.dto.CategoryDTO;
 import com.bookstore.entity.Category;
+import com.bookstore.event.CategoryChangedEvent;
+import com.bookstore.repository.BookRepository;
 import com.bookstore.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -15,6 +21,15 @@ public class CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
     
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private CategorySummaryCache categorySummaryCache;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     // Lấy tất cả thể loại - sử dụng JPA method
     public List<Category> getAllCategories() {
         return categoryRepository.findAllByOrderByNameAsc();
@@ -42,6 +57,38 @@ public class CategoryService {
         return categoryRepository.findByBooksIsNotEmpty();
     }
     
+    // Danh sách thể loại kèm số sách (GROUP BY, có cache), sắp xếp theo tên
+    @Transactional(readOnly = true)
+    public List<CategoryDTO> getCategorySummaries() {
+        return categorySummaryCache.get(categoryRepository::findAllSummariesOrderByNameAsc);
+    }
+    
+    // Thể loại kèm số sách theo ID
+    @Transactional(readOnly = true)
+    public CategoryDTO getCategorySummaryById(Long id) {
+        return getCategorySummaries().stream()
+            .filter(category -> category.getId().equals(id))
+            .findFirst()
+            .orElseThrow(() -> new RuntimeException("Không tìm thấy thể loại với ID: " + id));
+    }
+    
+    // Tìm kiếm thể loại theo tên trên danh sách đã cache (số thể loại nhỏ)
+    @Transactional(readOnly = true)
+    public List<CategoryDTO> searchCategorySummaries(String name) {
+        String needle = name.toLowerCase();
+        return getCategorySummaries().stream()
+            .filter(category -> category.getName() != null && category.getName().toLowerCase().contains(needle))
+            .collect(Collectors.toList());
+    }
+    
+    // Thể loại có ít nhất một sách
+    @Transactional(readOnly = true)
+    public List<CategoryDTO> getCategorySummariesWithBooks() {
+        return getCategorySummaries().stream()
+            .filter(category -> category.getBookCount() > 0)
+            .collect(Collectors.toList());
+    }
+    
     // Tạo thể loại mới
     public Category createCategory(Category category) {
         // Kiểm tra tên thể loại đã tồn tại
@@ -49,7 +96,7 @@ public class CategoryService {
             throw new RuntimeException("Thể loại đã tồn tại: " + category.getName());
         }
         
-        return categoryRepository.save(category);
+        return publishSaved(categoryRepository.save(category));
     }
     
     // Cập nhật thể loại
@@ -65,20 +112,21 @@ public class CategoryService {
         category.setName(categoryDetails.getName());
         category.setDescription(categoryDetails.getDescription());
         
-        return categoryRepository.save(category);
+        return publishSaved(categoryRepository.save(category));
     }
     
     // Xóa thể loại - cải thiện logic kiểm tra
     public void deleteCategory(Long id) {
         Category category = getCategoryById(id);
         
-        // Kiểm tra có sách nào thuộc thể loại này không bằng cách đếm
-        long bookCount = category.getBooks() != null ? category.getBooks().size() : 0;
+        // Kiểm tra có sách nào thuộc thể loại này không bằng COUNT (không load collection books)
+        long bookCount = bookRepository.countByCategoryId(category.getId());
         if (bookCount > 0) {
             throw new RuntimeException("Không thể xóa thể loại vì vẫn còn " + bookCount + " sách thuộc thể loại này");
         }
         
         categoryRepository.deleteById(id);
+        eventPublisher.publishEvent(CategoryChangedEvent.deleted(id));
     }
     
     // Kiểm tra tên thể loại có sẵn
@@ -90,4 +138,10 @@ public class CategoryService {
     public long getTotalCategoriesCount() {
         return categoryRepository.count();
     }
-} 
\ No newline at end of file
+    
+    // Phát sự kiện để các index in-memory (autocomplete) cập nhật sau khi commit
+    private Category publishSaved(Category category) {
+        eventPublisher.publishEvent(CategoryChangedEvent.saved(category.getId(), category.getName()));
+        return category;
+    }
+}
@@ -0,0 +1,342 @@
+package com.bookstore.service;
+
+import com.bookstore.config.StatementCounter;
+import com.bookstore.dto.OrderDTO;
+import com.bookstore.entity.Book;
+import com.bookstore.entity.Order;
+import com.bookstore.entity.OrderItem;
+import com.bookstore.entity.OrderStatus;
+import com.bookstore.entity.User;
+import com.bookstore.event.OrderSalesEvent;
+import com.bookstore.repository.BookRepository;
+import com.bookstore.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Đặt hàng theo pipeline với số câu lệnh cố định, không phụ thuộc số dòng trong giỏ: nạp user, nạp mọi sách
+// bằng một query IN, kiểm tra trong bộ nhớ, giữ hàng (InventoryService), ghi đơn và các dòng đơn bằng JDBC batch.
+// Order trả về không được quản lý bởi persistence context (đã có id, dùng để trả response và phát sự kiện).
+@Service
+@Transactional
+public class CheckoutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutService.class);
+
+    private static final String INSERT_ORDER_SQL =
+        "INSERT INTO orders (user_id, total_amount, status, shipping_address, payment_method, order_date) " +
+        "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_ITEM_SQL =
+        "INSERT INTO order_items (order_id, book_id, quantity, price) VALUES (?, ?, ?, ?)";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.checkout.max-lines:100}")
+    private int maxLines;
+
+    private final AtomicLong orders = new AtomicLong();
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong maxStatements = new AtomicLong();
+    private final AtomicLong elapsedNanos = new AtomicLong();
+
+    public Order checkout(Long userId, OrderDTO orderDTO) {
+        return place(userId, orderDTO);
+    }
+
+    // Đặt nhiều đơn trong một transaction (đặt hàng bất đồng bộ theo lô, một lần commit cho cả lô).
+    // Chuẩn bị mọi đơn trước (chỉ đọc), khóa hợp các sách của lô theo id tăng dần rồi mới giữ hàng và ghi từng đơn.
+    // Lỗi nghiệp vụ khi chuẩn bị hoặc hết hàng lúc giữ hàng xảy ra trước khi ghi gì nên chỉ đơn đó thất bại;
+    // mọi lỗi khác từ lúc giữ hàng trở đi (hoặc lỗi DB) được ném ra để cả lô rollback, không commit đơn ghi dở
+    public List<BatchResult> checkoutBatch(List<BatchRequest> requests) {
+        List<PreparedOrder> prepared = new ArrayList<>(requests.size());
+        List<String> errors = new ArrayList<>(requests.size());
+        Set<Long> bookIds = new TreeSet<>();
+        for (BatchRequest request : requests) {
+            try {
+                PreparedOrder order = prepare(request.getUserId(), request.getOrderDTO());
+                prepared.add(order);
+                errors.add(null);
+                bookIds.addAll(order.quantities.keySet());
+            } catch (DataAccessException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                prepared.add(null);
+                errors.add(e.getMessage());
+            }
+        }
+
+        inventoryService.lockBooks(bookIds);
+        List<BatchResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < prepared.size(); i++) {
+            if (prepared.get(i) == null) {
+                results.add(new BatchResult(null, errors.get(i)));
+                continue;
+            }
+            try {
+                results.add(new BatchResult(write(prepared.get(i)), null));
+            } catch (InventoryService.InsufficientStockException e) {
+                results.add(new BatchResult(null, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    // Kiểm tra dữ liệu đơn (không cần DB), trả về số lượng theo sách đã gộp các dòng cùng sách
+    public Map<Long, Integer> validate(OrderDTO orderDTO) {
+        List<OrderDTO.OrderItemDTO> lines = orderDTO.getOrderItems();
+        if (lines == null || lines.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách sản phẩm không được để trống");
+        }
+        if (lines.size() > maxLines) {
+            throw new IllegalArgumentException("Tối đa " + maxLines + " sản phẩm cho mỗi đơn hàng");
+        }
+
+        // Gộp các dòng cùng sách, giữ thứ tự gửi lên
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderDTO.OrderItemDTO line : lines) {
+            if (line.getBookId() == null) {
+                throw new IllegalArgumentException("ID sách không được để trống");
+            }
+            if (line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Số lượng sách phải lớn hơn 0");
+            }
+            quantities.merge(line.getBookId(), line.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    public CheckoutStats getStats() {
+        return new CheckoutStats(orders.get(), statements.get(), maxStatements.get(), elapsedNanos.get());
+    }
+
+    private Order place(Long userId, OrderDTO orderDTO) {
+        return write(prepare(userId, orderDTO));
+    }
+
+    // Nạp user, sách và dựng đơn trong bộ nhớ, chưa ghi gì. Gọi trực tiếp (không qua proxy) để lỗi nghiệp vụ
+    // trong checkoutBatch không đánh dấu rollback cả transaction
+    private PreparedOrder prepare(Long userId, OrderDTO orderDTO) {
+        long start = System.nanoTime();
+        long statementsBefore = StatementCounter.current();
+        List<OrderDTO.OrderItemDTO> lines = orderDTO.getOrderItems();
+        Map<Long, Integer> quantities = validate(orderDTO);
+
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new RuntimeException("Không tìm thấy user với ID: " + userId));
+        Map<Long, Book> books = new HashMap<>();
+        for (Book book : bookRepository.findAllByIdInWithCategoryAndAuthor(quantities.keySet())) {
+            books.put(book.getId(), book);
+        }
+
+        // Kiểm tra sơ bộ trong bộ nhớ (không khóa) để từ chối sớm, tồn kho thực sự được kiểm tra khi giữ hàng
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Book book = books.get(entry.getKey());
+            if (book == null) {
+                throw new RuntimeException("Không tìm thấy sách với ID: " + entry.getKey());
+            }
+            if (!book.isAvailable(entry.getValue())) {
+                throw new RuntimeException("Sách '" + book.getTitle() + "' không đủ số lượng tồn kho");
+            }
+        }
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setShippingAddress(orderDTO.getShippingAddress());
+        order.setPaymentMethod(orderDTO.getPaymentMethod());
+        order.setStatus(OrderStatus.PENDING);
+        order.setOrderDate(LocalDateTime.now());
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (OrderDTO.OrderItemDTO line : lines) {
+            Book book = books.get(line.getBookId());
+            // Lưu giá tại thời điểm đặt hàng
+            OrderItem orderItem = new OrderItem(book, line.getQuantity(), book.getPrice());
+            order.addOrderItem(orderItem);
+            totalAmount = totalAmount.add(orderItem.getSubtotal());
+        }
+        order.setTotalAmount(totalAmount);
+        return new PreparedOrder(order, quantities, books,
+            System.nanoTime() - start, StatementCounter.current() - statementsBefore);
+    }
+
+    // Giữ hàng rồi ghi đơn. Chỉ InsufficientStockException là chưa ghi gì; lỗi khác có thể xảy ra sau khi đã ghi
+    private Order write(PreparedOrder prepared) {
+        long start = System.nanoTime();
+        long statementsBefore = StatementCounter.current();
+        Order order = prepared.order;
+
+        // Giữ hàng ngay trước khi ghi đơn để khóa dòng sách trong thời gian ngắn nhất
+        InventoryService.StockChange stockChange = inventoryService.reserve(prepared.quantities);
+        insertOrder(order);
+        insertOrderItems(order);
+
+        inventoryService.publishStockChanged(stockChange, prepared.books.values());
+        eventPublisher.publishEvent(OrderSalesEvent.placed(order));
+
+        // Số câu lệnh đo thực tế trên connection (gồm cả lazy load/flush nếu có), không phải số theo thiết kế
+        long statementCount = prepared.statements + StatementCounter.current() - statementsBefore;
+        record(statementCount, prepared.nanos + System.nanoTime() - start);
+        logger.debug("Placed order {} with {} lines in {} statements",
+            order.getId(), order.getOrderItems().size(), statementCount);
+        return order;
+    }
+
+    private void insertOrder(Order order) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_ORDER_SQL, Statement.RETURN_GENERATED_KEYS);
+            ps.setLong(1, order.getUser().getId());
+            ps.setBigDecimal(2, order.getTotalAmount());
+            ps.setString(3, order.getStatus().name());
+            ps.setString(4, order.getShippingAddress());
+            ps.setString(5, order.getPaymentMethod());
+            ps.setTimestamp(6, Timestamp.valueOf(order.getOrderDate()));
+            return ps;
+        }, keys);
+        order.setId(keys.getKey().longValue());
+    }
+
+    // Một batch INSERT cho mọi dòng đơn, lấy lại id sinh ra để trả về cho client
+    private void insertOrderItems(Order order) {
+        List<OrderItem> items = order.getOrderItems();
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            con -> con.prepareStatement(INSERT_ITEM_SQL, Statement.RETURN_GENERATED_KEYS),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    OrderItem item = items.get(i);
+                    ps.setLong(1, order.getId());
+                    ps.setLong(2, item.getBook().getId());
+                    ps.setInt(3, item.getQuantity());
+                    ps.setBigDecimal(4, item.getPrice());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return items.size();
+                }
+            },
+            keys);
+
+        List<Map<String, Object>> generated = keys.getKeyList();
+        if (generated.size() != items.size()) {
+            throw new IllegalStateException("Số id sinh ra không khớp số dòng đơn hàng đã ghi");
+        }
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i).setId(((Number) generated.get(i).values().iterator().next()).longValue());
+        }
+    }
+
+    private void record(long statementCount, long nanos) {
+        orders.incrementAndGet();
+        statements.addAndGet(statementCount);
+        maxStatements.accumulateAndGet(statementCount, Math::max);
+        elapsedNanos.addAndGet(nanos);
+    }
+
+    // Đơn đã dựng xong trong bộ nhớ, kèm thời gian và số câu lệnh của bước chuẩn bị
+    private static class PreparedOrder {
+        private final Order order;
+        private final Map<Long, Integer> quantities;
+        private final Map<Long, Book> books;
+        private final long nanos;
+        private final long statements;
+
+        PreparedOrder(Order order, Map<Long, Integer> quantities, Map<Long, Book> books, long nanos, long statements) {
+            this.order = order;
+            this.quantities = quantities;
+            this.books = books;
+            this.nanos = nanos;
+            this.statements = statements;
+        }
+    }
+
+    // Một đơn trong lô
+    public static class BatchRequest {
+        private final Long userId;
+        private final OrderDTO orderDTO;
+
+        public BatchRequest(Long userId, OrderDTO orderDTO) {
+            this.userId = userId;
+            this.orderDTO = orderDTO;
+        }
+
+        public Long getUserId() { return userId; }
+        public OrderDTO getOrderDTO() { return orderDTO; }
+    }
+
+    // Kết quả một đơn trong lô: order khi thành công, error khi thất bại
+    public static class BatchResult {
+        private final Order order;
+        private final String error;
+
+        public BatchResult(Order order, String error) {
+            this.order = order;
+            this.error = error;
+        }
+
+        public Order getOrder() { return order; }
+        public String getError() { return error; }
+    }
+
+    // Số câu lệnh/batch gửi xuống DB cho mỗi đơn đặt thành công từ khi khởi động
+    public static class CheckoutStats {
+        private final long orders;
+        private final long totalStatements;
+        private final long maxStatementsPerOrder;
+        private final double averageStatementsPerOrder;
+        private final double averageMillisPerOrder;
+
+        public CheckoutStats(long orders, long totalStatements, long maxStatementsPerOrder, long elapsedNanos) {
+            this.orders = orders;
+            this.totalStatements = totalStatements;
+            this.maxStatementsPerOrder = maxStatementsPerOrder;
+            this.averageStatementsPerOrder = orders > 0 ? (double) totalStatements / orders : 0;
+            this.averageMillisPerOrder = orders > 0 ? elapsedNanos / 1_000_000.0 / orders : 0;
+        }
+
+        public long getOrders() { return orders; }
+        public long getTotalStatements() { return totalStatements; }
+        public long getMaxStatementsPerOrder() { return maxStatementsPerOrder; }
+        public double getAverageStatementsPerOrder() { return averageStatementsPerOrder; }
+        public double getAverageMillisPerOrder() { return averageMillisPerOrder; }
+    }
+}
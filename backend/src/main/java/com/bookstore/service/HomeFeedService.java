@@ -0,0 +1,190 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.entity.Book;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.event.OrderSalesEvent;
+import com.bookstore.ranking.SalesRanking;
+import com.bookstore.repository.BookRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Feed trang chủ (/latest, /bestsellers) được tính sẵn và serialize sẵn, request không chạm DB
+@Service
+public class HomeFeedService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HomeFeedService.class);
+
+    // Số sách tối đa giữ trong mỗi feed, limit lớn hơn sẽ bị cắt
+    public static final int MAX_FEED_SIZE = 50;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private SalesRanking salesRanking;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private volatile Feed latest = Feed.EMPTY;
+    private volatile Map<SalesRanking.Window, Feed> bestsellers = new EnumMap<>(SalesRanking.Window.class);
+    private volatile boolean loaded = false;
+    private volatile boolean dirty = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    // Catalog thay đổi -> đánh dấu, refresh gộp lại ở lần chạy kế tiếp thay vì mỗi event một lần
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        dirty = true;
+    }
+
+    // Đơn hàng đặt/hủy làm thay đổi xếp hạng bán chạy
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderSales(OrderSalesEvent event) {
+        dirty = true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.feed.dirty-check-interval-ms:2000}")
+    public void refreshIfDirty() {
+        if (dirty) {
+            refresh();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.feed.refresh-interval-ms:300000}",
+               initialDelayString = "${app.feed.refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    public synchronized void refresh() {
+        dirty = false;
+        try {
+            List<BookSummaryDTO> latestBooks = new ArrayList<>(bookRepository.findSummaries(
+                null, PageRequest.of(0, MAX_FEED_SIZE, Sort.by("createdAt").descending())).getContent());
+            latest = new Feed(Collections.unmodifiableList(latestBooks));
+            bestsellers = buildBestsellerFeeds(latestBooks);
+            loaded = true;
+        } catch (Exception e) {
+            // Giữ feed cũ, lần chạy sau sẽ thử lại
+            dirty = true;
+            logger.error("Failed to refresh home feeds", e);
+        }
+    }
+
+    // JSON của feed sách mới nhất
+    public byte[] getLatestJson(int limit) {
+        ensureLoaded();
+        return latest.json(limit, objectMapper);
+    }
+
+    // JSON của feed sách bán chạy theo cửa sổ thời gian
+    public byte[] getBestsellersJson(int limit, SalesRanking.Window window) {
+        ensureLoaded();
+        return bestsellers.getOrDefault(window, Feed.EMPTY).json(limit, objectMapper);
+    }
+
+    // Chỉ xảy ra khi request đến trước ApplicationReadyEvent
+    private void ensureLoaded() {
+        if (!loaded) {
+            refresh();
+        }
+    }
+
+    // Top bán chạy của mọi cửa sổ được nạp bằng một query IN (kèm images), thiếu thì bổ sung bằng sách mới nhất
+    private Map<SalesRanking.Window, Feed> buildBestsellerFeeds(List<BookSummaryDTO> latestBooks) {
+        Map<SalesRanking.Window, List<Long>> idsByWindow = new EnumMap<>(SalesRanking.Window.class);
+        Set<Long> allIds = new LinkedHashSet<>();
+        for (SalesRanking.Window window : SalesRanking.Window.values()) {
+            List<Long> ids = new ArrayList<>();
+            for (SalesRanking.BookSales sales : salesRanking.top(window, MAX_FEED_SIZE)) {
+                ids.add(sales.getBookId());
+            }
+            idsByWindow.put(window, ids);
+            allIds.addAll(ids);
+        }
+
+        Map<Long, BookSummaryDTO> booksById = new HashMap<>();
+        if (!allIds.isEmpty()) {
+            for (BookSummaryDTO book : toSummaries(bookRepository.findAllWithDetailsByIdIn(allIds))) {
+                booksById.put(book.getId(), book);
+            }
+        }
+
+        Map<SalesRanking.Window, Feed> feeds = new EnumMap<>(SalesRanking.Window.class);
+        for (Map.Entry<SalesRanking.Window, List<Long>> entry : idsByWindow.entrySet()) {
+            Map<Long, BookSummaryDTO> ranked = new LinkedHashMap<>();
+            for (Long id : entry.getValue()) {
+                BookSummaryDTO book = booksById.get(id);
+                if (book != null) {
+                    ranked.put(id, book);
+                }
+            }
+            for (BookSummaryDTO book : latestBooks) {
+                if (ranked.size() >= MAX_FEED_SIZE) {
+                    break;
+                }
+                ranked.putIfAbsent(book.getId(), book);
+            }
+            feeds.put(entry.getKey(), new Feed(Collections.unmodifiableList(new ArrayList<>(ranked.values()))));
+        }
+        return feeds;
+    }
+
+    private List<BookSummaryDTO> toSummaries(List<Book> books) {
+        List<BookSummaryDTO> result = new ArrayList<>();
+        for (Book book : books) {
+            result.add(BookSummaryDTO.fromBookWithDetails(book));
+        }
+        return result;
+    }
+
+    // Snapshot bất biến của một feed, JSON theo từng limit được serialize một lần rồi dùng lại
+    private static class Feed {
+        private static final Feed EMPTY = new Feed(Collections.emptyList());
+
+        private final List<BookSummaryDTO> books;
+        private final Map<Integer, byte[]> jsonByLimit = new ConcurrentHashMap<>();
+
+        Feed(List<BookSummaryDTO> books) {
+            this.books = books;
+        }
+
+        byte[] json(int limit, ObjectMapper objectMapper) {
+            int size = Math.max(0, Math.min(limit, books.size()));
+            return jsonByLimit.computeIfAbsent(size, n -> {
+                try {
+                    return objectMapper.writeValueAsBytes(books.subList(0, n));
+                } catch (JsonProcessingException e) {
+                    throw new RuntimeException("Không thể serialize feed", e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.OrderDTO;
+import com.bookstore.dto.OrderSummaryDTO;
+import com.bookstore.entity.IdempotencyKey;
+import com.bookstore.entity.Order;
+import com.bookstore.repository.IdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Đặt hàng idempotent theo header Idempotency-Key (phạm vi từng user): request lặp lại nhận lại đúng đơn đã tạo
+// mà không chạy checkout lần nữa. Kết quả giữ trong cache bộ nhớ có TTL, bảng idempotency_keys (ghi cùng
+// transaction với đơn) dùng chung cho nhiều node; request trùng đang chạy trên cùng node thì chờ kết quả của request đầu
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${app.idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${app.idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+
+    // accessOrder = true: phần tử đầu là phần tử ít được truy cập gần đây nhất
+    private final LinkedHashMap<String, CachedOutcome> cache = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public Outcome placeOrder(Long userId, String idempotencyKey, OrderDTO orderDTO) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key phải có từ 1 đến " + MAX_KEY_LENGTH + " ký tự");
+        }
+        String cacheKey = userId + ":" + idempotencyKey;
+        String requestHash = fingerprint(orderDTO);
+
+        CachedOutcome cached = getCached(cacheKey);
+        if (cached != null) {
+            checkSameRequest(cached.requestHash, requestHash);
+            return cached.outcome.replayed();
+        }
+
+        InFlight mine = new InFlight(requestHash);
+        InFlight running = inFlight.putIfAbsent(cacheKey, mine);
+        if (running != null) {
+            checkSameRequest(running.requestHash, requestHash);
+            return await(running).replayed();
+        }
+        try {
+            Outcome outcome = execute(userId, idempotencyKey, requestHash, orderDTO);
+            putCached(cacheKey, new CachedOutcome(requestHash, outcome));
+            mine.result.complete(outcome);
+            return outcome;
+        } catch (RuntimeException e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    // Xóa key hết hạn trong bảng và cache
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        LocalDateTime before = LocalDateTime.now().minusHours(ttlHours);
+        Integer deleted = new TransactionTemplate(transactionManager).execute(
+            status -> idempotencyKeyRepository.deleteCreatedBefore(before));
+        synchronized (cache) {
+            long now = System.currentTimeMillis();
+            cache.values().removeIf(entry -> entry.expiresAt <= now);
+        }
+        if (deleted != null && deleted > 0) {
+            logger.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    // Key đã có trong bảng (request trước trên node khác hoặc cache đã hết hạn) -> trả lại đơn cũ.
+    // Chưa có thì ghi key trước rồi mới checkout: request trùng trên node khác bị chặn ở unique index
+    // tới khi transaction này kết thúc, sau đó nhận lỗi trùng key và đọc lại kết quả
+    private Outcome execute(Long userId, String idempotencyKey, String requestHash, OrderDTO orderDTO) {
+        Outcome replay = replayFromTable(userId, idempotencyKey, requestHash);
+        if (replay != null) {
+            return replay;
+        }
+        try {
+            return new TransactionTemplate(transactionManager).execute(status -> {
+                IdempotencyKey key = idempotencyKeyRepository.saveAndFlush(
+                    new IdempotencyKey(userId, idempotencyKey, requestHash));
+                Order order = orderService.createOrder(userId, orderDTO);
+                key.setOrderId(order.getId());
+                return new Outcome(OrderSummaryDTO.fromOrderWithDetails(order), false);
+            });
+        } catch (DataIntegrityViolationException e) {
+            replay = replayFromTable(userId, idempotencyKey, requestHash);
+            if (replay == null) {
+                throw e;
+            }
+            return replay;
+        }
+    }
+
+    private Outcome replayFromTable(Long userId, String idempotencyKey, String requestHash) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> {
+            IdempotencyKey key = idempotencyKeyRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .orElse(null);
+            if (key == null || key.getOrderId() == null) {
+                return null;
+            }
+            checkSameRequest(key.getRequestHash(), requestHash);
+            Order order = orderService.getOrderByIdWithDetails(key.getOrderId());
+            return new Outcome(OrderSummaryDTO.fromOrderWithDetails(order), true);
+        });
+    }
+
+    // Chờ request đầu tiên cùng key; lỗi của nó được ném lại nguyên vẹn
+    private Outcome await(InFlight running) {
+        try {
+            return running.result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new KeyConflictException("Yêu cầu với Idempotency-Key này đang được xử lý, vui lòng thử lại sau");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bị gián đoạn khi chờ yêu cầu trùng Idempotency-Key");
+        }
+    }
+
+    private static void checkSameRequest(String expectedHash, String requestHash) {
+        if (!expectedHash.equals(requestHash)) {
+            throw new KeyConflictException("Idempotency-Key đã được dùng cho một đơn hàng có nội dung khác");
+        }
+    }
+
+    private CachedOutcome getCached(String cacheKey) {
+        synchronized (cache) {
+            CachedOutcome entry = cache.get(cacheKey);
+            if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+                cache.remove(cacheKey);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void putCached(String cacheKey, CachedOutcome entry) {
+        synchronized (cache) {
+            cache.put(cacheKey, entry);
+            Iterator<String> eldest = cache.keySet().iterator();
+            while (cache.size() > cacheSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    // SHA-256 của nội dung đơn (địa chỉ, thanh toán, các dòng theo thứ tự gửi lên)
+    private static String fingerprint(OrderDTO orderDTO) {
+        StringBuilder content = new StringBuilder()
+            .append(orderDTO.getShippingAddress()).append('\n')
+            .append(orderDTO.getPaymentMethod()).append('\n');
+        if (orderDTO.getOrderItems() != null) {
+            for (OrderDTO.OrderItemDTO item : orderDTO.getOrderItems()) {
+                content.append(item.getBookId()).append(':').append(item.getQuantity()).append(';');
+            }
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Kết quả đặt hàng; replayed = true nếu trả lại đơn đã tạo trước đó
+    public static class Outcome {
+        private final OrderSummaryDTO order;
+        private final boolean replayed;
+
+        public Outcome(OrderSummaryDTO order, boolean replayed) {
+            this.order = order;
+            this.replayed = replayed;
+        }
+
+        Outcome replayed() {
+            return replayed ? this : new Outcome(order, true);
+        }
+
+        public OrderSummaryDTO getOrder() { return order; }
+        public boolean isReplayed() { return replayed; }
+    }
+
+    // Key đang được xử lý quá lâu hoặc bị dùng lại cho nội dung khác
+    public static class KeyConflictException extends RuntimeException {
+        public KeyConflictException(String message) {
+            super(message);
+        }
+    }
+
+    private class CachedOutcome {
+        private final String requestHash;
+        private final Outcome outcome;
+        private final long expiresAt;
+
+        CachedOutcome(String requestHash, Outcome outcome) {
+            this.requestHash = requestHash;
+            this.outcome = outcome;
+            this.expiresAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(ttlHours);
+        }
+    }
+
+    private static class InFlight {
+        private final String requestHash;
+        private final CompletableFuture<Outcome> result = new CompletableFuture<>();
+
+        InFlight(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+}
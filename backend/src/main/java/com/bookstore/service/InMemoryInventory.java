@@ -0,0 +1,364 @@
+package com.bookstore.service;
+
+import com.bookstore.config.NodeLease;
+import com.bookstore.event.BookChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+// Chế độ tồn kho in-memory (app.inventory.in-memory=true) cho sách bán chạy: tồn kho mỗi sách được chia vào
+// nhiều ô đếm atomic, giữ hàng chỉ là CAS trong bộ nhớ nên không tranh chấp khóa dòng books trong MySQL.
+// Mỗi thay đổi được ghi vào bảng inventory_journal trong cùng transaction với đơn hàng (bền vững cùng đơn),
+// flusher cộng dồn journal vào books vài ms một lần rồi xóa các dòng đã áp dụng. Sau khi crash, journal còn lại
+// được áp dụng lúc khởi động nên books luôn khớp với các đơn đã commit - chỉ khi schema được giữ qua các lần khởi động:
+// với spring.jpa.hibernate.ddl-auto=create(-drop) (mặc định của repo) books và journal bị tạo lại nên không có gì để khôi phục.
+// Bộ đếm chỉ nằm trong bộ nhớ của một node nên chế độ này dựa vào NodeLease (chỉ một instance chạy);
+// node mất lease thì từ chối giữ/hoàn kho để không bán hai lần.
+@Component
+public class InMemoryInventory {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryInventory.class);
+
+    private static final String INSERT_JOURNAL_SQL =
+        "INSERT INTO inventory_journal (book_id, delta, created_at) VALUES (?, ?, ?)";
+
+    private static final String APPLY_DELTA_SQL =
+        "UPDATE books SET stock_quantity = COALESCE(stock_quantity, 0) + ?, updated_at = ? WHERE id = ?";
+
+    // Ô đếm cách nhau 16 int (64 byte) để các thread không ghi chung một cache line
+    private static final int CELL_SPACING = 16;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private NodeLease nodeLease;
+
+    @Value("${app.inventory.in-memory:false}")
+    private boolean enabled;
+
+    @Value("${app.inventory.stripes:8}")
+    private int stripes;
+
+    @Value("${app.inventory.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    @Value("${spring.jpa.hibernate.ddl-auto:none}")
+    private String ddlAuto;
+
+    private final Map<Long, StripedCounter> counters = new ConcurrentHashMap<>();
+
+    // Số lượng đã trừ trong bộ nhớ nhưng transaction giữ hàng chưa kết thúc (journal chưa thấy được)
+    private final Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Áp dụng journal còn sót từ lần chạy trước (kể cả khi chế độ in-memory đã tắt) trước khi nhận đơn
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled && ("create".equals(ddlAuto) || "create-drop".equals(ddlAuto))) {
+            logger.warn("In-memory inventory is enabled with ddl-auto={}: the journal is recreated on every boot, " +
+                "so stock held in memory at a crash cannot be recovered", ddlAuto);
+        }
+        int applied = 0;
+        int batch;
+        while ((batch = flush()) > 0) {
+            applied += batch;
+        }
+        if (applied > 0) {
+            logger.info("Recovered {} inventory journal entries", applied);
+        }
+    }
+
+    // Giữ hàng cho cả đơn (đã sắp theo id). Ném InsufficientStockException (không kèm message) nếu thiếu hàng,
+    // khi đó mọi ô đã trừ được hoàn lại ngay. Transaction rollback thì số đã trừ được trả lại bộ nhớ
+    public InventoryService.StockChange reserve(Map<Long, Integer> quantities) {
+        checkLease();
+        ensureLoaded(quantities.keySet());
+        Map<Long, Integer> taken = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            StripedCounter counter = counters.get(entry.getKey());
+            if (counter == null) {
+                // Vừa bị bỏ do admin sửa sách giữa chừng
+                ensureLoaded(Collections.singletonList(entry.getKey()));
+                counter = counters.get(entry.getKey());
+            }
+            if (counter == null || !counter.tryTake(entry.getValue())) {
+                for (Map.Entry<Long, Integer> done : taken.entrySet()) {
+                    add(done.getKey(), done.getValue());
+                }
+                throw new InventoryService.InsufficientStockException(entry.getKey(), null);
+            }
+            taken.put(entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<Long, Integer> entry : taken.entrySet()) {
+            inFlight.computeIfAbsent(entry.getKey(), k -> new AtomicInteger()).addAndGet(entry.getValue());
+        }
+        afterCompletion(committed -> {
+            for (Map.Entry<Long, Integer> entry : taken.entrySet()) {
+                if (!committed) {
+                    add(entry.getKey(), entry.getValue());
+                }
+                inFlight.get(entry.getKey()).addAndGet(-entry.getValue());
+            }
+        });
+        writeJournal(taken, -1);
+        return new InventoryService.StockChange(levels(taken.keySet()));
+    }
+
+    // Hoàn kho: ghi journal ngay, cộng vào bộ nhớ sau khi commit để không bán số hàng có thể bị rollback
+    public InventoryService.StockChange release(Map<Long, Integer> quantities) {
+        checkLease();
+        ensureLoaded(quantities.keySet());
+        writeJournal(quantities, 1);
+        afterCompletion(committed -> {
+            if (committed) {
+                for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                    add(entry.getKey(), entry.getValue());
+                }
+            }
+        });
+        Map<Long, Integer> levels = levels(quantities.keySet());
+        levels.replaceAll((bookId, stock) -> stock + quantities.get(bookId));
+        return new InventoryService.StockChange(levels);
+    }
+
+    // Cộng dồn một lô journal vào books trong một transaction; trả về số dòng journal đã áp dụng.
+    // Dòng của transaction chưa commit không đọc được nên không bị xóa nhầm
+    public int flush() {
+        Integer applied = new TransactionTemplate(transactionManager).execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            Map<Long, Integer> deltas = new TreeMap<>();
+            jdbcTemplate.query("SELECT id, book_id, delta FROM inventory_journal ORDER BY id LIMIT ?", rs -> {
+                ids.add(rs.getLong(1));
+                deltas.merge(rs.getLong(2), rs.getInt(3), Integer::sum);
+            }, flushBatchSize);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> updates = new ArrayList<>();
+            for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+                if (entry.getValue() != 0) {
+                    updates.add(new Object[]{entry.getValue(), now, entry.getKey()});
+                }
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, updates);
+            }
+            jdbcTemplate.update("DELETE FROM inventory_journal WHERE id IN (" + placeholders(ids.size()) + ")",
+                ids.toArray());
+            return ids.size();
+        });
+        return applied != null ? applied : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.flush-interval-ms:5}")
+    public void scheduledFlush() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            flush();
+        } catch (Exception e) {
+            // Journal vẫn còn nguyên, lần sau thử lại
+            logger.warn("Failed to flush inventory journal: {}", e.getMessage());
+        }
+    }
+
+    // Tồn kho sách bị sửa trực tiếp (admin) hoặc sách bị xóa -> bỏ bộ đếm, lần giữ hàng sau nạp lại từ DB.
+    // Snapshot do chính việc giữ/hoàn kho phát ra thì bỏ qua
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void onBookChanged(BookChangedEvent event) {
+        if (enabled && !event.isStockOnly()) {
+            counters.remove(event.getBookId());
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("trackedBooks", counters.size());
+        stats.put("stripes", stripes);
+        Integer pending = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inventory_journal", Integer.class);
+        stats.put("pendingJournalEntries", pending != null ? pending : 0);
+        return stats;
+    }
+
+    private void checkLease() {
+        if (nodeLease.isLost()) {
+            throw new IllegalStateException("Node đã mất lease (một node khác đang chạy), vui lòng khởi động lại");
+        }
+    }
+
+    // Nạp bộ đếm cho các sách chưa có: tồn kho trong books + journal đã commit chưa áp dụng - phần đang giữ dở.
+    // Đọc inFlight trước query để nếu có đơn commit xen giữa thì chỉ bị trừ hai lần (an toàn), không bị thiếu
+    private void ensureLoaded(Collection<Long> bookIds) {
+        List<Long> missing = new ArrayList<>();
+        for (Long bookId : bookIds) {
+            if (!counters.containsKey(bookId)) {
+                missing.add(bookId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> inFlightBefore = new HashMap<>();
+        for (Long bookId : missing) {
+            AtomicInteger reserved = inFlight.get(bookId);
+            inFlightBefore.put(bookId, reserved != null ? reserved.get() : 0);
+        }
+        jdbcTemplate.query(
+            "SELECT b.id, COALESCE(b.stock_quantity, 0) + COALESCE((SELECT SUM(j.delta) FROM inventory_journal j " +
+            "WHERE j.book_id = b.id), 0) FROM books b WHERE b.id IN (" + placeholders(missing.size()) + ")",
+            rs -> {
+                long bookId = rs.getLong(1);
+                int available = Math.max(0, rs.getInt(2) - inFlightBefore.get(bookId));
+                counters.putIfAbsent(bookId, new StripedCounter(stripes, available));
+            },
+            missing.toArray());
+    }
+
+    private Map<Long, Integer> levels(Collection<Long> bookIds) {
+        Map<Long, Integer> levels = new LinkedHashMap<>();
+        for (Long bookId : bookIds) {
+            StripedCounter counter = counters.get(bookId);
+            if (counter != null) {
+                levels.put(bookId, counter.sum());
+            }
+        }
+        return levels;
+    }
+
+    // Bộ đếm có thể đã bị bỏ (admin sửa sách) - khi đó giá trị nạp lại đã tính phần này
+    private void add(Long bookId, int quantity) {
+        StripedCounter counter = counters.get(bookId);
+        if (counter != null) {
+            counter.add(quantity);
+        }
+    }
+
+    private void writeJournal(Map<Long, Integer> quantities, int sign) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            rows.add(new Object[]{entry.getKey(), sign * entry.getValue(), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_JOURNAL_SQL, rows);
+    }
+
+    private static void afterCompletion(Consumer<Boolean> callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    // Tồn kho một sách chia vào nhiều ô; thread bắt đầu lấy từ ô của mình rồi sang ô khác nếu thiếu.
+    // Không ô nào âm nên không bao giờ bán quá; gần hết hàng có thể từ chối nhầm khi thread khác đang lấy dở
+    private static class StripedCounter {
+        private final AtomicIntegerArray cells;
+        private final int stripes;
+
+        StripedCounter(int stripes, int total) {
+            this.stripes = Math.max(1, stripes);
+            this.cells = new AtomicIntegerArray(this.stripes * CELL_SPACING);
+            for (int i = 0; i < this.stripes; i++) {
+                cells.set(i * CELL_SPACING, total / this.stripes + (i < total % this.stripes ? 1 : 0));
+            }
+        }
+
+        boolean tryTake(int quantity) {
+            int home = home();
+            int remaining = quantity;
+            int[] taken = new int[stripes];
+            for (int i = 0; i < stripes && remaining > 0; i++) {
+                int stripe = (home + i) % stripes;
+                int index = stripe * CELL_SPACING;
+                while (true) {
+                    int value = cells.get(index);
+                    if (value == 0) {
+                        break;
+                    }
+                    int take = Math.min(value, remaining);
+                    if (cells.compareAndSet(index, value, value - take)) {
+                        taken[stripe] += take;
+                        remaining -= take;
+                        break;
+                    }
+                }
+            }
+            if (remaining > 0) {
+                for (int stripe = 0; stripe < stripes; stripe++) {
+                    if (taken[stripe] > 0) {
+                        cells.addAndGet(stripe * CELL_SPACING, taken[stripe]);
+                    }
+                }
+                return false;
+            }
+            return true;
+        }
+
+        void add(int quantity) {
+            cells.addAndGet(home() * CELL_SPACING, quantity);
+        }
+
+        int sum() {
+            int sum = 0;
+            for (int i = 0; i < stripes; i++) {
+                sum += cells.get(i * CELL_SPACING);
+            }
+            return sum;
+        }
+
+        private int home() {
+            long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+            return (int) ((hash >>> 33) % stripes);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookSummaryDTO;
+import com.bookstore.entity.Book;
+import com.bookstore.event.BookChangedEvent;
+import com.bookstore.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Giữ/hoàn kho cho cả đơn với số câu lệnh cố định: khóa các dòng sách theo id tăng dần (SELECT ... FOR UPDATE),
+// kiểm tra trong bộ nhớ rồi trừ bằng một batch UPDATE có điều kiện (stock >= số lượng), nên hai đơn đồng thời
+// không thể bán quá tồn kho và các transaction luôn khóa dòng cùng thứ tự (không deadlock lẫn nhau).
+// Chạy bằng JDBC trên connection của transaction hiện tại; entity Book đã nạp trong transaction sẽ không thấy tồn kho mới.
+// Khi bật app.inventory.in-memory, giữ/hoàn kho đi qua InMemoryInventory thay vì khóa dòng books.
+// Hết hàng được phát hiện trước khi ghi nên không cần rollback transaction của nơi gọi
+@Service
+@Transactional(noRollbackFor = InventoryService.InsufficientStockException.class)
+public class InventoryService {
+
+    private static final String DECREMENT_SQL =
+        "UPDATE books SET stock_quantity = stock_quantity - ?, updated_at = ? WHERE id = ? AND stock_quantity >= ?";
+
+    private static final String INCREMENT_SQL =
+        "UPDATE books SET stock_quantity = COALESCE(stock_quantity, 0) + ?, updated_at = ? WHERE id = ?";
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InMemoryInventory inMemoryInventory;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final AtomicLong reservedOrders = new AtomicLong();
+    private final AtomicLong rejectedOrders = new AtomicLong();
+    private final AtomicLong releasedOrders = new AtomicLong();
+
+    // Giữ hàng cho cả đơn (bookId -> số lượng), trả về tồn kho sau khi trừ. Không đủ hàng thì ném lỗi và không trừ gì
+    public StockChange reserve(Map<Long, Integer> quantities) {
+        Map<Long, Integer> sorted = sorted(quantities);
+        if (inMemoryInventory.isEnabled()) {
+            try {
+                StockChange change = inMemoryInventory.reserve(sorted);
+                reservedOrders.incrementAndGet();
+                return withAvailability(change.getStockLevels(), sorted, -1);
+            } catch (InsufficientStockException e) {
+                rejectedOrders.incrementAndGet();
+                throw new InsufficientStockException(e.getBookId(), describeFailure(e.getBookId()));
+            }
+        }
+        Map<Long, Integer> current = selectStock(sorted.keySet(), true);
+        for (Map.Entry<Long, Integer> entry : sorted.entrySet()) {
+            Integer stock = current.get(entry.getKey());
+            if (stock == null || stock < entry.getValue()) {
+                rejectedOrders.incrementAndGet();
+                throw new InsufficientStockException(entry.getKey(), describeFailure(entry.getKey()));
+            }
+        }
+
+        // Các dòng đã bị khóa và kiểm tra ở trên nên điều kiện stock >= số lượng luôn đúng, giữ lại để không bao giờ âm kho.
+        // Kiểm tra phòng thủ: dòng nào không được cập nhật nghĩa là có nơi ghi books không qua khóa, rollback cả đơn
+        int[] counts = jdbcTemplate.batchUpdate(DECREMENT_SQL, rows(sorted, Timestamp.valueOf(LocalDateTime.now()), true));
+        for (int count : counts) {
+            if (count == 0) {
+                throw new IllegalStateException("Tồn kho thay đổi trong lúc giữ hàng dù các dòng sách đã bị khóa");
+            }
+        }
+
+        Map<Long, Integer> stockLevels = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : sorted.entrySet()) {
+            stockLevels.put(entry.getKey(), current.get(entry.getKey()) - entry.getValue());
+        }
+        reservedOrders.incrementAndGet();
+        return withAvailability(stockLevels, sorted, -1);
+    }
+
+    // Khóa trước các dòng sách của cả lô đơn theo id tăng dần để mọi transaction khóa cùng thứ tự:
+    // nếu không, lô A giữ sách 5 rồi chờ sách 2 trong khi lô B giữ sách 2 rồi chờ sách 5 sẽ deadlock.
+    // Chế độ in-memory không khóa dòng books nên bỏ qua
+    public void lockBooks(Collection<Long> bookIds) {
+        if (bookIds.isEmpty() || inMemoryInventory.isEnabled()) {
+            return;
+        }
+        selectStock(new TreeSet<>(bookIds), true);
+    }
+
+    // Hoàn kho khi hủy đơn, trả về tồn kho sau khi cộng
+    public StockChange release(Map<Long, Integer> quantities) {
+        Map<Long, Integer> sorted = sorted(quantities);
+        if (inMemoryInventory.isEnabled()) {
+            releasedOrders.incrementAndGet();
+            return withAvailability(inMemoryInventory.release(sorted).getStockLevels(), sorted, 1);
+        }
+        jdbcTemplate.batchUpdate(INCREMENT_SQL, rows(sorted, Timestamp.valueOf(LocalDateTime.now()), false));
+        releasedOrders.incrementAndGet();
+        // Dòng đã bị khóa bởi UPDATE ở trên nên giá trị đọc được giữ nguyên tới khi commit
+        return withAvailability(selectStock(sorted.keySet(), false), sorted, 1);
+    }
+
+    // Phát snapshot tồn kho mới cho các index in-memory (sau commit). books: sách đã nạp kèm category/author,
+    // null thì nạp lại
+    public void publishStockChanged(StockChange stockChange, Collection<Book> books) {
+        Map<Long, Integer> stockLevels = stockChange.getStockLevels();
+        if (books == null) {
+            books = bookRepository.findAllByIdInWithCategoryAndAuthor(stockLevels.keySet());
+        }
+        Map<Long, List<String>> imagesByBookId = new HashMap<>();
+        for (Object[] row : bookRepository.findImagesByBookIdIn(stockLevels.keySet())) {
+            imagesByBookId.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((String) row[1]);
+        }
+
+        for (Book book : books) {
+            Integer stock = stockLevels.get(book.getId());
+            if (stock == null) {
+                continue;
+            }
+            BookSummaryDTO snapshot = BookSummaryDTO.fromBookWithDetails(
+                book, imagesByBookId.getOrDefault(book.getId(), Collections.emptyList()));
+            snapshot.setStockQuantity(stock);
+            snapshot.setInStock(stock > 0);
+            eventPublisher.publishEvent(BookChangedEvent.stockChanged(
+                snapshot, stockChange.getAvailabilityChanged().contains(book.getId())));
+        }
+    }
+
+    public InventoryStats getStats() {
+        return new InventoryStats(reservedOrders.get(), rejectedOrders.get(), releasedOrders.get());
+    }
+
+    // Tồn kho hiện tại theo id; lock = true khóa các dòng (InnoDB quét khóa chính theo id tăng dần)
+    private Map<Long, Integer> selectStock(Collection<Long> ids, boolean lock) {
+        String sql = "SELECT id, stock_quantity FROM books WHERE id IN (" + String.join(",", Collections.nCopies(ids.size(), "?"))
+            + ") ORDER BY id" + (lock ? " FOR UPDATE" : "");
+        Map<Long, Integer> stock = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            stock.put(rs.getLong(1), rs.getObject(2) != null ? rs.getInt(2) : 0);
+        }, ids.toArray());
+        return stock;
+    }
+
+    private static List<Object[]> rows(Map<Long, Integer> quantities, Timestamp now, boolean guarded) {
+        List<Object[]> rows = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            rows.add(guarded
+                ? new Object[]{entry.getValue(), now, entry.getKey(), entry.getValue()}
+                : new Object[]{entry.getValue(), now, entry.getKey()});
+        }
+        return rows;
+    }
+
+    // Sắp theo id và kiểm tra số lượng
+    private Map<Long, Integer> sorted(Map<Long, Integer> quantities) {
+        if (quantities == null || quantities.isEmpty()) {
+            throw new IllegalArgumentException("Đơn hàng phải có ít nhất một sách");
+        }
+        Map<Long, Integer> sorted = new TreeMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalArgumentException("Số lượng sách phải lớn hơn 0");
+            }
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        return sorted;
+    }
+
+    // Sách chuyển giữa còn hàng/hết hàng: tồn kho trước = sau - sign * số lượng (sign -1 khi giữ, +1 khi hoàn)
+    private static StockChange withAvailability(Map<Long, Integer> stockLevels, Map<Long, Integer> quantities, int sign) {
+        Set<Long> availabilityChanged = new HashSet<>();
+        for (Map.Entry<Long, Integer> entry : stockLevels.entrySet()) {
+            int after = entry.getValue();
+            int before = after - sign * quantities.getOrDefault(entry.getKey(), 0);
+            if ((before > 0) != (after > 0)) {
+                availabilityChanged.add(entry.getKey());
+            }
+        }
+        return new StockChange(stockLevels, availabilityChanged);
+    }
+
+    private String describeFailure(Long bookId) {
+        return bookRepository.findById(bookId)
+            .map(book -> "Sách '" + book.getTitle() + "' không đủ số lượng tồn kho")
+            .orElse("Không tìm thấy sách với ID: " + bookId);
+    }
+
+    // Tồn kho sau thay đổi (bookId -> số lượng, theo id tăng dần) và các sách vừa chuyển còn hàng/hết hàng
+    public static class StockChange {
+        private final Map<Long, Integer> stockLevels;
+        private final Set<Long> availabilityChanged;
+
+        public StockChange(Map<Long, Integer> stockLevels) {
+            this(stockLevels, Collections.emptySet());
+        }
+
+        public StockChange(Map<Long, Integer> stockLevels, Set<Long> availabilityChanged) {
+            this.stockLevels = stockLevels;
+            this.availabilityChanged = availabilityChanged;
+        }
+
+        public Map<Long, Integer> getStockLevels() { return stockLevels; }
+        public Set<Long> getAvailabilityChanged() { return availabilityChanged; }
+    }
+
+    // Không đủ tồn kho cho một sách trong đơn
+    public static class InsufficientStockException extends RuntimeException {
+        private final Long bookId;
+
+        public InsufficientStockException(Long bookId, String message) {
+            super(message);
+            this.bookId = bookId;
+        }
+
+        public Long getBookId() { return bookId; }
+    }
+
+    // Số đơn đã giữ hàng / bị từ chối vì hết hàng / đã hoàn kho từ khi khởi động
+    public static class InventoryStats {
+        private final long reservedOrders;
+        private final long rejectedOrders;
+        private final long releasedOrders;
+
+        public InventoryStats(long reservedOrders, long rejectedOrders, long releasedOrders) {
+            this.reservedOrders = reservedOrders;
+            this.rejectedOrders = rejectedOrders;
+            this.releasedOrders = releasedOrders;
+        }
+
+        public long getReservedOrders() { return reservedOrders; }
+        public long getRejectedOrders() { return rejectedOrders; }
+        public long getReleasedOrders() { return releasedOrders; }
+    }
+}
@@ -2,10 +2,10 @@ package com.bookstore.service;
 
 import com.bookstore.dto.OrderDTO;
 import com.bookstore.entity.*;
-import com.bookstore.repository.BookRepository;
+import com.bookstore.event.OrderSalesEvent;
 import com.bookstore.repository.OrderRepository;
-import com.bookstore.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -15,7 +15,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Transactional
@@ -25,57 +27,22 @@ public class OrderService {
     private OrderRepository orderRepository;
     
     @Autowired
-    private BookRepository bookRepository;
+    private InventoryService inventoryService;
     
     @Autowired
-    private UserRepository userRepository;
+    private CheckoutService checkoutService;
     
     @Autowired
-    private BookService bookService;
+    private ApplicationEventPublisher eventPublisher;
     
-    // Tạo đơn hàng mới
+    // Tạo đơn hàng mới - pipeline batch trong CheckoutService
     public Order createOrder(Long userId, OrderDTO orderDTO) {
-        User user = userRepository.findById(userId)
-            .orElseThrow(() -> new RuntimeException("Không tìm thấy user với ID: " + userId));
-        
-        // Tạo đơn hàng
-        Order order = new Order();
-        order.setUser(user);
-        order.setShippingAddress(orderDTO.getShippingAddress());
-        order.setPaymentMethod(orderDTO.getPaymentMethod());
-        order.setStatus(OrderStatus.PENDING);
-        
-        BigDecimal totalAmount = BigDecimal.ZERO;
-        
-        // Xử lý từng OrderItem
-        for (OrderDTO.OrderItemDTO itemDTO : orderDTO.getOrderItems()) {
-            Book book = bookRepository.findById(itemDTO.getBookId())
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy sách với ID: " + itemDTO.getBookId()));
-            
-            // Kiểm tra số lượng tồn kho
-            if (!book.isAvailable(itemDTO.getQuantity())) {
-                throw new RuntimeException("Sách '" + book.getTitle() + "' không đủ số lượng tồn kho");
-            }
-            
-            // Tạo OrderItem
-            OrderItem orderItem = new OrderItem();
-            orderItem.setBook(book);
-            orderItem.setQuantity(itemDTO.getQuantity());
-            orderItem.setPrice(book.getPrice()); // Lưu giá tại thời điểm đặt hàng
-            
-            // Thêm vào đơn hàng
-            order.addOrderItem(orderItem);
-            
-            // Tính tổng tiền
-            totalAmount = totalAmount.add(orderItem.getSubtotal());
-            
-            // Giảm stock
-            bookService.reduceStock(book.getId(), itemDTO.getQuantity());
-        }
-        
-        order.setTotalAmount(totalAmount);
-        
-        return orderRepository.save(order);
+        return checkoutService.checkout(userId, orderDTO);
+    }
+    
+    // Tạo nhiều đơn trong một transaction (đặt hàng bất đồng bộ), kết quả theo thứ tự yêu cầu
+    public List<CheckoutService.BatchResult> createOrders(List<CheckoutService.BatchRequest> requests) {
+        return checkoutService.checkoutBatch(requests);
     }
     
     // Lấy đơn hàng theo ID
@@ -143,13 +110,22 @@ public class OrderService {
         Order order = getOrderById(orderId);
         
         OrderStatus oldStatus = order.getStatus();
+        
+        // Hủy đồng thời: chỉ request đổi được trạng thái trong DB mới hoàn kho
+        // (phải chạy trước setStatus, nếu không auto-flush sẽ ghi trạng thái mới trước câu UPDATE có điều kiện)
+        boolean cancelling = newStatus == OrderStatus.CANCELLED && oldStatus != OrderStatus.CANCELLED
+            && orderRepository.updateStatusIfChanged(orderId, OrderStatus.CANCELLED) == 1;
         order.setStatus(newStatus);
         
         // Nếu hủy đơn hàng, hoàn lại stock
-        if (newStatus == OrderStatus.CANCELLED && oldStatus != OrderStatus.CANCELLED) {
+        if (cancelling) {
+            Map<Long, Integer> quantities = new HashMap<>();
             for (OrderItem item : order.getOrderItems()) {
-                bookService.increaseStock(item.getBook().getId(), item.getQuantity());
+                quantities.merge(item.getBook().getId(), item.getQuantity(), Integer::sum);
             }
+            InventoryService.StockChange stockChange = inventoryService.release(quantities);
+            inventoryService.publishStockChanged(stockChange, null);
+            eventPublisher.publishEvent(OrderSalesEvent.cancelled(order));
         }
         
         return orderRepository.save(order);
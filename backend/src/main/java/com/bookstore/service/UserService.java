@@ -180,9 +180,4 @@ public class UserService {
     public long getActiveUsersCount() {
         return userRepository.countByEnabled(true);
     }
-    
-    // Bulk delete users
-    public void bulkDeleteUsers(List<Long> userIds) {
-        userRepository.deleteAllById(userIds);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.bookstore.controller;
+
+import com.bookstore.entity.Author;
+import com.bookstore.entity.Book;
+import com.bookstore.entity.Category;
+import com.bookstore.repository.AuthorRepository;
+import com.bookstore.repository.BookRepository;
+import com.bookstore.repository.CategoryRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Số câu lệnh SQL của các trang danh sách sách không được tăng theo kích thước trang (không N+1 trên book_images)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class BookListingStatementCountTest {
+
+    private static final int[] PAGE_SIZES = {5, 50, 500};
+
+    // Đủ để trang lớn nhất vẫn đầy (Spring Data bỏ COUNT khi trang đầu chưa đầy)
+    private static final int CATALOG_SIZE = 600;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        seedCatalog();
+    }
+
+    @Test
+    void bookListingUsesSameStatementsForEveryPageSize() throws Exception {
+        assertConstantStatements(size -> "/api/books?limit=" + size);
+    }
+
+    @Test
+    void keysetBookListingUsesSameStatementsForEveryPageSize() throws Exception {
+        assertConstantStatements(size -> "/api/books?keyset=true&limit=" + size);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminBookListingUsesSameStatementsForEveryPageSize() throws Exception {
+        assertConstantStatements(size -> "/api/admin/books?size=" + size);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminKeysetBookListingUsesSameStatementsForEveryPageSize() throws Exception {
+        assertConstantStatements(size -> "/api/admin/books?keyset=true&size=" + size);
+    }
+
+    // /latest trả feed tính sẵn (HomeFeedService), request không chạm DB với mọi limit
+    @Test
+    void latestBooksDoNotQueryDatabase() throws Exception {
+        for (int size : PAGE_SIZES) {
+            statistics.clear();
+            mockMvc.perform(get("/api/books/latest?limit=" + size)).andExpect(status().isOk());
+            assertEquals(0, statistics.getPrepareStatementCount(), "/api/books/latest?limit=" + size);
+        }
+    }
+
+    private void assertConstantStatements(IntFunction<String> url) throws Exception {
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        for (int size : PAGE_SIZES) {
+            statistics.clear();
+            mockMvc.perform(get(url.apply(size)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(size));
+            counts.put(size, statistics.getPrepareStatementCount());
+        }
+
+        long expected = counts.get(PAGE_SIZES[0]);
+        assertTrue(expected > 0, "Không đếm được câu lệnh nào: " + counts);
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            assertEquals(expected, entry.getValue(), "Số câu lệnh thay đổi theo kích thước trang " + counts);
+        }
+    }
+
+    // Mỗi sách có 2 ảnh để lộ ra N+1 nếu images bị nạp theo từng sách
+    private void seedCatalog() {
+        long missing = CATALOG_SIZE - bookRepository.count();
+        if (missing <= 0) {
+            return;
+        }
+        Category category = categoryRepository.save(new Category("Thể loại kiểm thử", "Dữ liệu kiểm thử"));
+        Author author = authorRepository.save(new Author("Tác giả kiểm thử", "Dữ liệu kiểm thử"));
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < missing; i++) {
+            Book book = new Book();
+            book.setTitle("Sách kiểm thử " + i);
+            book.setPrice(BigDecimal.valueOf(50000 + i));
+            book.setStockQuantity(10);
+            book.setCategory(category);
+            book.setAuthor(author);
+            book.setImages(new ArrayList<>(List.of("/uploads/test-" + i + "-1.jpg", "/uploads/test-" + i + "-2.jpg")));
+            books.add(book);
+        }
+        bookRepository.saveAll(books);
+    }
+}
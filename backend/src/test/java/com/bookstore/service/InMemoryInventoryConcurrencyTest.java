@@ -0,0 +1,21 @@
+package com.bookstore.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+// Cùng bài kiểm tra bán quá với chế độ tồn kho in-memory
+@SpringBootTest(properties = "app.inventory.in-memory=true")
+@ActiveProfiles("test")
+class InMemoryInventoryConcurrencyTest extends InventoryServiceConcurrencyTest {
+
+    @Autowired
+    private InMemoryInventory inMemoryInventory;
+
+    // Cộng hết journal vào books để so được với tồn kho trong DB
+    @Override
+    protected void settle() {
+        while (inMemoryInventory.flush() > 0) {
+        }
+    }
+}
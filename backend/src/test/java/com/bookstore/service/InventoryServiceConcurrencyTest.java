@@ -0,0 +1,129 @@
+package com.bookstore.service;
+
+import com.bookstore.entity.Book;
+import com.bookstore.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Nhiều thread cùng giữ hàng trên vài sách "hot" (đơn nhiều sách, thứ tự ngẫu nhiên) tới khi hết hàng:
+// tổng số đã bán phải đúng bằng số tồn kho bị trừ và không sách nào âm kho
+@SpringBootTest
+@ActiveProfiles("test")
+class InventoryServiceConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int ATTEMPTS_PER_THREAD = 200;
+    private static final int HOT_BOOKS = 3;
+    private static final int INITIAL_STOCK = 500;
+
+    @Autowired
+    protected InventoryService inventoryService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        List<Long> bookIds = createHotBooks();
+        Map<Long, AtomicLong> sold = new ConcurrentHashMap<>();
+        for (Long id : bookIds) {
+            sold.put(id, new AtomicLong());
+        }
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    Map<Long, Integer> order = randomOrder(bookIds);
+                    try {
+                        inventoryService.reserve(order);
+                        order.forEach((id, quantity) -> sold.get(id).addAndGet(quantity));
+                        reserved.incrementAndGet();
+                    } catch (InventoryService.InsufficientStockException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(5, TimeUnit.MINUTES);
+        }
+        double seconds = (System.nanoTime() - begin) / 1_000_000_000.0;
+        pool.shutdown();
+        settle();
+
+        System.out.printf("%s: %d orders reserved, %d rejected in %.2f s (%.0f orders/s, %.0f reserved/s)%n",
+            getClass().getSimpleName(), reserved.get(), rejected.get(), seconds,
+            (reserved.get() + rejected.get()) / seconds, reserved.get() / seconds);
+
+        for (Long id : bookIds) {
+            int stock = jdbcTemplate.queryForObject("SELECT stock_quantity FROM books WHERE id = ?", Integer.class, id);
+            assertTrue(stock >= 0, "Sách " + id + " bị âm kho: " + stock);
+            assertEquals(INITIAL_STOCK - sold.get(id).get(), stock, "Tồn kho của sách " + id + " lệch với số đã bán");
+        }
+        assertTrue(rejected.get() > 0, "Tổng nhu cầu phải vượt tồn kho để kiểm tra được trường hợp hết hàng");
+    }
+
+    // Chờ các thay đổi tồn kho được ghi xuống books trước khi kiểm tra
+    protected void settle() {
+    }
+
+    private List<Long> createHotBooks() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < HOT_BOOKS; i++) {
+            Book book = new Book();
+            book.setTitle("Sách flash sale " + i);
+            book.setPrice(BigDecimal.valueOf(99000));
+            book.setStockQuantity(INITIAL_STOCK);
+            ids.add(bookRepository.save(book).getId());
+        }
+        return ids;
+    }
+
+    // 1-3 sách khác nhau, mỗi sách 1-3 cuốn, thứ tự ngẫu nhiên (InventoryService phải tự khóa theo id tăng dần)
+    private static Map<Long, Integer> randomOrder(List<Long> bookIds) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> shuffled = new ArrayList<>(bookIds);
+        Collections.shuffle(shuffled, random);
+        Map<Long, Integer> order = new LinkedHashMap<>();
+        int lines = 1 + random.nextInt(shuffled.size());
+        for (int i = 0; i < lines; i++) {
+            order.put(shuffled.get(i), 1 + random.nextInt(3));
+        }
+        return order;
+    }
+}